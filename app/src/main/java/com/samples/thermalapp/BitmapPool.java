@@ -0,0 +1,74 @@
+package com.samples.thermalapp;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+
+/**
+ * Bounded pool of mutable Bitmaps, reused by dimensions and config so the native bitmap memory does not churn at the frame rate.
+ * <p>
+ * Bitmaps are acquired on the camera thread and released on the UI thread, all methods are thread safe.
+ */
+class BitmapPool {
+
+    private final int maxSize;
+    private final ArrayList<Bitmap> free;
+    private int created = 0;
+    private int reused = 0;
+
+    BitmapPool(int maxSize) {
+        this.maxSize = maxSize;
+        this.free = new ArrayList<>(maxSize);
+    }
+
+    /**
+     * Get a mutable bitmap, the content is undefined and has to be overwritten by the caller
+     */
+    public synchronized Bitmap acquire(int width, int height, Bitmap.Config config) {
+        for (int i = free.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = free.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+                free.remove(i);
+                reused++;
+                return bitmap;
+            }
+        }
+        created++;
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Give a bitmap back to the pool, it must not be used by the caller afterwards
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (free.size() >= maxSize) {
+            //the oldest entry is the most likely to have a stale size, eg after switching cameras
+            free.remove(0).recycle();
+        }
+        free.add(bitmap);
+    }
+
+    /**
+     * Recycle all pooled bitmaps
+     */
+    public synchronized void clear() {
+        for (Bitmap bitmap : free) {
+            bitmap.recycle();
+        }
+        free.clear();
+    }
+
+    /**
+     * Number of bitmaps allocated because no pooled one fit, stays flat during a stream once the pool is warm
+     */
+    public synchronized int getCreatedCount() {
+        return created;
+    }
+
+    public synchronized int getReusedCount() {
+        return reused;
+    }
+}
@@ -2,7 +2,6 @@
 package com.samples.thermalapp;
 
 import android.graphics.Bitmap;
-import android.graphics.Color;
 import android.os.Build;
 import android.util.Log;
 
@@ -10,11 +9,13 @@ import androidx.annotation.RequiresApi;
 
 import com.flir.thermalsdk.androidsdk.image.BitmapAndroid;
 import com.flir.thermalsdk.image.ColorDistribution;
+import com.flir.thermalsdk.image.JavaImageBuffer;
 import com.flir.thermalsdk.image.Rectangle;
 import com.flir.thermalsdk.image.Scale;
 import com.flir.thermalsdk.image.TemperatureUnit;
 import com.flir.thermalsdk.image.ThermalImage;
 import com.flir.thermalsdk.image.fusion.FusionMode;
+import com.flir.thermalsdk.image.palettes.Palette;
 import com.flir.thermalsdk.image.palettes.PaletteManager;
 import com.flir.thermalsdk.live.Camera;
 import com.flir.thermalsdk.live.CommunicationInterface;
@@ -24,23 +25,109 @@ import com.flir.thermalsdk.live.connectivity.ConnectionStatusListener;
 import com.flir.thermalsdk.live.discovery.DiscoveryEventListener;
 import com.flir.thermalsdk.live.discovery.DiscoveryFactory;
 import com.flir.thermalsdk.live.streaming.ThermalImageStreamListener;
+import com.samples.thermalapp.detection.AdaptiveSampling;
+import com.samples.thermalapp.detection.AmbientConditions;
+import com.samples.thermalapp.detection.CondensationDetector;
+import com.samples.thermalapp.detection.DetectionStats;
+import com.samples.thermalapp.detection.IncrementalDetector;
+import com.samples.thermalapp.detection.PaletteMapper;
+import com.samples.thermalapp.detection.RadiometricScale;
+import com.samples.thermalapp.detection.RegionLabeler;
+import com.samples.thermalapp.detection.RiskRegions;
+import com.samples.thermalapp.detection.ScaleRange;
+import com.samples.thermalapp.recording.RawRecorder;
+import com.samples.thermalapp.recording.RecordedFrame;
+import com.samples.thermalapp.recording.RecordingFormat;
+import com.samples.thermalapp.recording.ReplaySource;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
 import java.util.Collections;
+import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 class CameraHandler {
 
     private static final String TAG = "CameraHandler";
+    //bounded so high resolution frames never take every core away from the SDK and the UI
+    private static final int DETECTION_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
     private StreamDataListener streamDataListener;
 
+    //finds the pixels below the dew point and draws them on the thermal image
+    private final CondensationDetector detector = new CondensationDetector();
+    private final CondensationOverlay overlay = new CondensationOverlay();
+    //groups the risk pixels into regions with area, bounds, centroid and minimum
+    private final RegionLabeler regionLabeler = new RegionLabeler();
+    private final ForkJoinPool detectionPool = new ForkJoinPool(DETECTION_THREADS);
+    //frames and bitmaps handed to the listener, recycled once the UI is done with them
+    private final FramePool framePool = new FramePool();
+    //the visual image is only extracted on demand
+    private volatile boolean visualImageEnabled = false;
+    private final AtomicBoolean visualImageRequested = new AtomicBoolean(false);
+    //room conditions published by the UI, read once per frame
+    private final AtomicReference<AmbientConditions> ambientConditions = new AtomicReference<>(AmbientConditions.DEFAULT);
+    //classify 16 bit raw values against a threshold converted once per conditions change, instead of floats.
+    //off by default: the SDK only hands over doubles, so a live frame would have to be converted to raw first
+    private volatile boolean rawDetection = false;
+    private final RadiometricScale rawScale = RadiometricScale.CENTIKELVIN;
+    private AmbientConditions rawThresholdConditions;
+    private int rawThreshold;
+    //raw mode only: reclassify just the tiles that changed, for a camera held still on a wall
+    private final IncrementalDetector incrementalDetector = new IncrementalDetector();
+    private volatile boolean incrementalDetection = false;
+    private boolean incrementalFrame = false;
+    private DetectionStats frameStats = detector.getStats();
+    //sampling stride of the detection, adapted to stay within a time budget per frame. Off by default
+    private final AdaptiveSampling adaptiveSampling = new AdaptiveSampling();
+    private volatile boolean adaptiveSamplingEnabled = false;
+    private int appliedStride = 0;
+    //raw frames are appended while recording, null otherwise
+    private volatile RawRecorder recorder;
+    //0 records uncompressed, the frame is copied once straight into the mapped file.
+    //Compressed recordings copy it into a pooled buffer first and encode it on the recorder's thread
+    private volatile int recordingKeyFrameInterval = 0;
+    //completes stopped recordings one after the other, off the calling thread
+    private final ExecutorService recordingCloser = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "RecordingClose"));
+    //plays a recording instead of a camera, null otherwise
+    private ReplaySource replaySource;
+    private final PaletteMapper replayPalette = PaletteMapper.iron();
+    private int[] replayPixels = new int[0];
+    //saves requested frames in the background, null if snapshots are not set up
+    private volatile SnapshotExporter snapshotExporter;
+    private volatile boolean snapshotVisualImage = false;
+
+    //per-frame scratch state, sized once per stream resolution and reused between frames
+    private int frameWidth = -1;
+    private int frameHeight = -1;
+    private Rectangle frameRectangle;
+    private float[] frameTemperatures;
+    private short[] frameRaw;
+    private Palette palette;
+    private int frameBufferAllocations = 0;
+    private long processedFrames = 0;
+    //latency of every stage, the display stages are recorded by the UI
+    private final PipelineTimings timings = new PipelineTimings();
+    //when the SDK announced the frame being processed, camera thread only
+    private long receivedNanos;
+
     public interface StreamDataListener {
+        /**
+         * A new frame from the stream, call {@link FrameDataHolder#release()} once it is no longer shown
+         */
         void images(FrameDataHolder dataHolder);
         void images(Bitmap msxBitmap, Bitmap dcBitmap);
-        void images(Bitmap msxBitmap, Bitmap dcBitmap,Double MinTemp,Double MaxTemp);
+        void images(Bitmap msxBitmap, Bitmap dcBitmap, double MinTemp, double MaxTemp);
 
 
     }
@@ -59,6 +146,160 @@ class CameraHandler {
     }
 
     public CameraHandler() {
+        detector.setParallelism(detectionPool, CondensationDetector.DEFAULT_PARALLEL_PIXELS);
+    }
+
+    /**
+     * Classify frames as 16 bit centikelvin values with integer compares or as float Kelvin values (default).
+     * Both give the same mask within 0.01 K, the statistics are in the unit of the mode, see {@link #getRawScale()}.
+     * Live frames come from the SDK as doubles and have to be converted for the raw mode, so it only pays off when the
+     * raw values are needed anyway, eg while recording. Replayed frames are always classified as raw values
+     */
+    public void setRawDetection(boolean rawDetection) {
+        this.rawDetection = rawDetection;
+    }
+
+    public boolean isRawDetection() {
+        return rawDetection;
+    }
+
+    /**
+     * In raw detection mode, only classify the tiles whose values changed by more than the change threshold of
+     * {@link #getIncrementalDetector()} or lie close to the threshold, and keep the rest from earlier frames.
+     * Region labelling is skipped when no tile changed
+     */
+    public void setIncrementalDetection(boolean incrementalDetection) {
+        this.incrementalDetection = incrementalDetection;
+    }
+
+    public boolean isIncrementalDetection() {
+        return incrementalDetection;
+    }
+
+    /**
+     * The detector of the incremental mode, eg to tune its change threshold
+     */
+    public IncrementalDetector getIncrementalDetector() {
+        return incrementalDetector;
+    }
+
+    /**
+     * Adapt the sampling stride of the detection to the time budget of {@link #getAdaptiveSampling()}, from every pixel
+     * on fast devices to every 18th pixel of every 18th row on slow ones. Off by default, every pixel is classified.
+     * The overlay keeps its dots either way, and incremental detection always classifies every changed tile
+     */
+    public void setAdaptiveSampling(boolean enabled) {
+        this.adaptiveSamplingEnabled = enabled;
+    }
+
+    public boolean isAdaptiveSampling() {
+        return adaptiveSamplingEnabled;
+    }
+
+    /**
+     * The controller of the adaptive mode, eg to change the budget or read the current stride and density
+     */
+    public AdaptiveSampling getAdaptiveSampling() {
+        return adaptiveSampling;
+    }
+
+    /**
+     * Maps the raw values of the raw detection mode to Kelvin
+     */
+    public RadiometricScale getRawScale() {
+        return rawScale;
+    }
+
+    /**
+     * Compress the next recordings losslessly with a key frame every {@code keyFrameInterval} frames, so long scan
+     * sessions fit on the device. 0 records uncompressed, which is the default
+     */
+    public void setRecordingCompression(int keyFrameInterval) {
+        if (keyFrameInterval < 0) {
+            throw new IllegalArgumentException("keyFrameInterval must not be negative, was " + keyFrameInterval);
+        }
+        this.recordingKeyFrameInterval = keyFrameInterval;
+    }
+
+    /**
+     * Start recording the raw frames of the stream with their metadata to a new file in {@code directory},
+     * see {@link #setRecordingCompression(int)}
+     *
+     * @return the recording file
+     */
+    public synchronized File startRecording(File directory) throws IOException {
+        if (recorder != null) {
+            return recorder.getFile();
+        }
+        String name = "recording-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date()) + RecordingFormat.FILE_EXTENSION;
+        recorder = new RawRecorder(new File(directory, name), RecordingFormat.DEFAULT_CHUNK_SIZE, recordingKeyFrameInterval);
+        Log.d(TAG, "recording to " + recorder.getFile());
+        return recorder.getFile();
+    }
+
+    /**
+     * Stop recording, the file is completed on a background thread
+     *
+     * @return the stopped recorder for its frame counts, null if there was no recording
+     */
+    public synchronized RawRecorder stopRecording() {
+        RawRecorder stopped = recorder;
+        if (stopped == null) {
+            return null;
+        }
+        recorder = null;
+        //flushing can take a moment, keep it off the calling thread
+        recordingCloser.execute(() -> {
+            try {
+                stopped.close();
+                Log.d(TAG, "recorded " + stopped.getFrameCount() + " frames to " + stopped.getFile() + ", dropped " + stopped.getDroppedFrames());
+            } catch (IOException e) {
+                Log.e(TAG, "could not complete recording " + stopped.getFile(), e);
+            }
+        });
+        return stopped;
+    }
+
+    public boolean isRecording() {
+        return recorder != null;
+    }
+
+    /**
+     * Where {@link #takeSnapshots(int, boolean)} sends the frames, null turns snapshots off
+     */
+    public void setSnapshotExporter(SnapshotExporter snapshotExporter) {
+        this.snapshotExporter = snapshotExporter;
+    }
+
+    /**
+     * Save the next {@code frames} frames as they are shown, with the overlay, through the {@link SnapshotExporter}
+     *
+     * @param visualImage also save the visual image, it is only extracted for the frames of the snapshot
+     */
+    public void takeSnapshots(int frames, boolean visualImage) {
+        SnapshotExporter exporter = snapshotExporter;
+        if (exporter == null) {
+            throw new IllegalStateException("no snapshot exporter set");
+        }
+        snapshotVisualImage = visualImage;
+        exporter.request(frames);
+    }
+
+    /**
+     * Frames with at least this many pixels are classified in row bands on a bounded pool, smaller frames on the camera thread
+     */
+    public void setParallelDetectionPixels(int minPixels) {
+        detector.setParallelism(detectionPool, minPixels);
+    }
+
+    /**
+     * Stop a replay and end the detection threads, once the handler is no longer used.
+     * A frame that is still on its way is classified on the camera thread, stopped recordings are still completed
+     */
+    public void shutdown() {
+        stopReplay();
+        detectionPool.shutdown();
+        recordingCloser.shutdown();
     }
 
     /**
@@ -107,6 +348,93 @@ class CameraHandler {
         camera.unsubscribeStream(listener);
     }
 
+    /**
+     * Play a recording through the same detection and overlay steps as a live stream, no camera needed.
+     * Frames go to {@code listener} like the frames of {@link #startStream(StreamDataListener)}, so do not run both at once.
+     * The thermal image is coloured with {@link PaletteMapper#iron()} as the SDK palette needs a live {@link ThermalImage}
+     */
+    public synchronized ReplaySource startReplay(File recording, ReplaySource.Pacing pacing, double framesPerSecond, boolean loop, StreamDataListener listener) {
+        stopReplay();
+        this.streamDataListener = listener;
+        replaySource = new ReplaySource(recording, pacing, framesPerSecond, loop);
+        replaySource.start(replayListener);
+        return replaySource;
+    }
+
+    /**
+     * Stop the running replay, if any
+     */
+    public synchronized void stopReplay() {
+        if (replaySource != null) {
+            replaySource.stop();
+            replaySource = null;
+        }
+    }
+
+    private final ReplaySource.Listener replayListener = new ReplaySource.Listener() {
+        @Override
+        public void onFrame(RecordedFrame frame) {
+            handleReplayFrame(frame);
+        }
+
+        @Override
+        public void onEnd(IOException error) {
+            if (error != null) {
+                Log.e(TAG, "replay failed", error);
+            } else {
+                Log.d(TAG, "replay ended, " + processedFrames + " frames processed");
+            }
+        }
+    };
+
+    /**
+     * The replay counterpart of the stream listener, runs on the replay thread
+     */
+    private void handleReplayFrame(RecordedFrame recorded) {
+        long receivedNanos = System.nanoTime();
+        int width = recorded.getWidth();
+        int height = recorded.getHeight();
+        int size = width * height;
+        short[] raw = recorded.getRaw();
+        RadiometricScale scale = recorded.getScale();
+        applySamplingStride();
+        //the conditions and scale of the recording, so a replay reproduces what was seen in the field
+        byte[] mask = classifyRaw(raw, width, height, scale.toRawThreshold(recorded.getConditions().getDewPointKelvin()));
+        int min = (int) frameStats.getMin();
+        int max = (int) frameStats.getMax();
+        long stageStart = timings.record(PipelineTimings.Stage.DETECTION, receivedNanos);
+        if (adaptiveSamplingEnabled) {
+            adaptiveSampling.record(stageStart - receivedNanos);
+        }
+
+        //palette and dots go into one pixel buffer that is copied into the bitmap once
+        if (replayPixels.length < size) {
+            replayPixels = new int[size];
+        }
+        replayPalette.map(raw, size, min, max, replayPixels);
+        overlay.render(replayPixels, width, mask, width, width, height);
+        stageStart = timings.record(PipelineTimings.Stage.OVERLAY, stageStart);
+        Bitmap msxBitmap = framePool.getBitmapPool().acquire(width, height, Bitmap.Config.ARGB_8888);
+        msxBitmap.setPixels(replayPixels, 0, width, 0, 0, width, height);
+        timings.record(PipelineTimings.Stage.BITMAP, stageStart);
+
+        double minC = ScaleRange.truncateForDisplay(scale.toTemperature(min) - AmbientConditions.KELVIN_OFFSET);
+        double maxC = ScaleRange.truncateForDisplay(scale.toTemperature(max) - AmbientConditions.KELVIN_OFFSET);
+        processedFrames++;
+        FrameDataHolder frame = framePool.acquire();
+        frame.set(msxBitmap, null, minC, maxC);
+        RiskRegions regions = regionLabeler.getRegions();
+        frame.setRiskRegions(regions.getCount(), regions.getLargestFraction());
+        frame.detectionDensity = frameStats.getDensity();
+        SnapshotExporter exporter = snapshotExporter;
+        if (exporter != null) {
+            exporter.capture(frame, recorded.getConditions(), recorded.getTimestampMillis());
+        }
+        frame.receivedNanos = receivedNanos;
+        frame.offeredNanos = System.nanoTime();
+        streamDataListener.images(frame);
+    }
+
     /**
      * Add a found camera to the list of known cameras
      */
@@ -179,11 +507,195 @@ class CameraHandler {
         @Override
         public void onImageReceived() {
             //Will be called on a non-ui thread
-            Log.d(TAG, "onImageReceived(), we got another ThermalImage");
+            receivedNanos = System.nanoTime();
             withImage(this, handleIncomingImage);
         }
     };
 
+    /**
+     * Make sure the per-frame scratch buffers match the stream resolution, they are only reallocated when the resolution changes
+     */
+    private void ensureFrameBuffers(int width, int height) {
+        if (width == frameWidth && height == frameHeight) {
+            return;
+        }
+        frameWidth = width;
+        frameHeight = height;
+        frameRectangle = new Rectangle(0, 0, width, height);
+        //only the buffer of the detection mode in use is allocated, see rawFrame() and floatFrame()
+        frameTemperatures = null;
+        frameRaw = null;
+        Log.d(TAG, "frame buffers sized for " + width + "x" + height + ", buffer allocations so far:" + frameBufferAllocations);
+    }
+
+    private short[] rawFrame() {
+        if (frameRaw == null) {
+            frameRaw = new short[frameWidth * frameHeight];
+            frameBufferAllocations++;
+        }
+        return frameRaw;
+    }
+
+    private float[] floatFrame() {
+        if (frameTemperatures == null) {
+            frameTemperatures = new float[frameWidth * frameHeight];
+            frameBufferAllocations++;
+        }
+        return frameTemperatures;
+    }
+
+    /**
+     * Set the stride of the adaptive mode on the detector, only when it changed. The overlay is not touched, a sampled
+     * mask is filled in blocks, so the dots keep the same density and size whatever the detector samples
+     */
+    private void applySamplingStride() {
+        int stride = adaptiveSamplingEnabled ? adaptiveSampling.getStride() : 1;
+        if (stride == appliedStride) {
+            return;
+        }
+        appliedStride = stride;
+        detector.setSampleStride(stride);
+        Log.d(TAG, "sampling stride " + stride);
+    }
+
+    /**
+     * Classify a raw frame, incrementally if enabled, and label its risk regions
+     *
+     * @return the risk mask
+     */
+    private byte[] classifyRaw(short[] raw, int width, int height, int threshold) {
+        byte[] mask;
+        if (incrementalDetection) {
+            frameStats = incrementalDetector.detect(raw, width, height, threshold);
+            mask = incrementalDetector.getMask();
+            //an unchanged mask has the same regions
+            if (incrementalDetector.hasChanged() || !incrementalFrame) {
+                regionLabeler.label(mask, raw, width, height);
+            }
+            incrementalFrame = true;
+        } else {
+            frameStats = detector.detect(raw, width, height, threshold);
+            mask = detector.getMask();
+            regionLabeler.label(mask, raw, width, height);
+            incrementalFrame = false;
+        }
+        return mask;
+    }
+
+    /**
+     * The dew point in raw units, only converted again when new conditions were published
+     */
+    private int rawThreshold(AmbientConditions conditions) {
+        if (conditions != rawThresholdConditions) {
+            rawThreshold = rawScale.toRawThreshold(conditions.getDewPointKelvin());
+            rawThresholdConditions = conditions;
+        }
+        return rawThreshold;
+    }
+
+    /**
+     * Copy an SDK image into a bitmap from the pool, the same copy {@link BitmapAndroid#createBitmap} does into a new bitmap
+     */
+    private Bitmap toPooledBitmap(JavaImageBuffer image) {
+        Bitmap bitmap = framePool.getBitmapPool().acquire(image.width, image.height, Bitmap.Config.ARGB_8888);
+        bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(image.pixelBuffer));
+        return bitmap;
+    }
+
+    /**
+     * Include the visual image in every frame, eg while the photo view is shown
+     */
+    public void setVisualImageEnabled(boolean enabled) {
+        visualImageEnabled = enabled;
+    }
+
+    /**
+     * Include the visual image in the next frame only, eg for a snapshot
+     */
+    public void requestVisualImage() {
+        visualImageRequested.set(true);
+    }
+
+    private boolean takeVisualImageRequest() {
+        //plain read first so frames without a request do not write to the flag
+        return visualImageEnabled || (visualImageRequested.get() && visualImageRequested.compareAndSet(true, false))
+                || (snapshotVisualImage && isSnapshotPending());
+    }
+
+    private boolean isSnapshotPending() {
+        SnapshotExporter exporter = snapshotExporter;
+        return exporter != null && exporter.isPending();
+    }
+
+    /**
+     * The pool frames are taken from, frames go back to it with {@link FrameDataHolder#release()}
+     */
+    public FramePool getFramePool() {
+        return framePool;
+    }
+
+    /**
+     * Number of times a per-frame value buffer, raw or float, was allocated for a new resolution or detection mode.
+     * Stays constant after the first frame of a stream
+     */
+    public int getFrameBufferAllocations() {
+        return frameBufferAllocations;
+    }
+
+    /**
+     * The overlay used to mark condensation risk, can be used to change dot size, stride and colour
+     */
+    public CondensationOverlay getOverlay() {
+        return overlay;
+    }
+
+    /**
+     * Publish new room conditions, the next frame is classified against their dew point
+     */
+    public void setAmbientConditions(AmbientConditions conditions) {
+        if (conditions == null) {
+            throw new IllegalArgumentException("conditions is null");
+        }
+        ambientConditions.set(conditions);
+    }
+
+    /**
+     * The room conditions frames are currently classified against
+     */
+    public AmbientConditions getAmbientConditions() {
+        return ambientConditions.get();
+    }
+
+    /**
+     * Risk regions of the last processed frame, only valid on the thread that delivers the frames.
+     * Minimum values are in the unit of the detection mode, like {@link #getDetectionStats()}
+     */
+    public RiskRegions getRiskRegions() {
+        return regionLabeler.getRegions();
+    }
+
+    /**
+     * Statistics of the last processed frame, only valid on the thread that delivers the frames.
+     * Values are raw units of {@link #getRawScale()} in raw detection mode and Kelvin otherwise
+     */
+    public DetectionStats getDetectionStats() {
+        return frameStats;
+    }
+
+    /**
+     * Latency of the pipeline stages, the UI records the handoff and display stages
+     */
+    public PipelineTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * Number of frames processed since this handler was created
+     */
+    public long getProcessedFrames() {
+        return processedFrames;
+    }
+
     /**
      * Function to process a Thermal Image and update UI
      */
@@ -191,57 +703,105 @@ class CameraHandler {
         @RequiresApi(api = Build.VERSION_CODES.O)
         @Override
         public void accept(ThermalImage thermalImage) {
-            Log.d(TAG, "accept() called with: thermalImage = [" + thermalImage.getDescription() + "]");
             //Will be called on a non-ui thread,
             // extract information on the background thread and send the specific information to the UI thread
+            //withImage runs this on the thread of onImageReceived
+            long receivedNanos = CameraHandler.this.receivedNanos;
+            long stageStart = timings.record(PipelineTimings.Stage.WITH_IMAGE, receivedNanos);
 
             //Get a bitmap with only IR data
             Bitmap msxBitmap;
             {
-                //settings
+                //settings, the scale is shown in Celsius
                 thermalImage.setTemperatureUnit(TemperatureUnit.CELSIUS);
                 thermalImage.getFusion().setFusionMode(FusionMode.THERMAL_ONLY);
-                thermalImage.setPalette(PaletteManager.getDefaultPalettes().get(0));
+                if (palette == null) {
+                    palette = PaletteManager.getDefaultPalettes().get(0);
+                }
+                thermalImage.setPalette(palette);
                 thermalImage.setColorDistribution(ColorDistribution.HISTOGRAM_EQUALIZATION);
-                int red = Color.parseColor("#ae0700");
-                int neonGreen = Color.parseColor("#39ff14");
 
                 //sets scale
                 Scale scale = thermalImage.getScale();
-                double minC = Double.parseDouble(String.valueOf(scale.getRangeMin()).substring(0,4));
-                double maxC = Double.parseDouble(String.valueOf(scale.getRangeMax()).substring(0,4));
-
-                //creates the bitmap of temperature data
-                msxBitmap = BitmapAndroid.createBitmap(thermalImage.getImage()).getBitMap();
-
-                //gets actual raw temp values
-                Rectangle rectangle = new Rectangle(0, 0, thermalImage.getWidth(), thermalImage.getHeight());
-                double[] all_temp = thermalImage.getValues(rectangle);
-                double[][] temps = new double[thermalImage.getWidth()][thermalImage.getHeight()];
-                int dotsize = 3;
-                //loop every 9 pixels
-                for (int i = 0; i < thermalImage.getWidth()-dotsize; i+=9) {
-                    for(int j=0;j<thermalImage.getHeight()-dotsize;j+=9)
-                    {
-                        if(all_temp[j*thermalImage.getWidth() + i] < MainActivity.GetCutoffDewPoint())
-                        {
-                            //makes a three by three green dot
-                            for(int x=0;x<dotsize;x++)
-                            {
-                                for(int y=0;y<dotsize;y++) {
-                                    msxBitmap.setPixel(i+x,j+y, neonGreen);
-                                }
-                            }
-                        }
+                double minC = ScaleRange.truncateForDisplay(scale.getRangeMin());
+                double maxC = ScaleRange.truncateForDisplay(scale.getRangeMax());
+
+                //copies the temperature data into a pooled bitmap
+                msxBitmap = toPooledBitmap(thermalImage.getImage());
+                stageStart = timings.record(PipelineTimings.Stage.BITMAP, stageStart);
+
+                int width = thermalImage.getWidth();
+                int height = thermalImage.getHeight();
+                ensureFrameBuffers(width, height);
+
+                //gets actual raw temp values, the array is owned by the SDK and only read here.
+                //Detection, dew point and recording all work in Kelvin
+                thermalImage.setTemperatureUnit(TemperatureUnit.KELVIN);
+                double[] allTemp = thermalImage.getValues(frameRectangle);
+                stageStart = timings.record(PipelineTimings.Stage.GET_VALUES, stageStart);
+                //one snapshot per frame, new conditions can be published while we classify
+                AmbientConditions conditions = ambientConditions.get();
+                long timestampMillis = System.currentTimeMillis();
+                RawRecorder recorder = CameraHandler.this.recorder;
+                //2 bytes per pixel, used by the raw detection modes and the recording
+                short[] raw = null;
+                if (rawDetection || recorder != null) {
+                    raw = rawFrame();
+                    rawScale.toRaw(allTemp, raw, raw.length);
+                }
+                float[] temperatures = null;
+                if (!rawDetection) {
+                    temperatures = floatFrame();
+                    for (int i = 0; i < temperatures.length; i++) {
+                        temperatures[i] = (float) allTemp[i];
                     }
                 }
+                //the adaptive mode times classification and labelling only, the conversions above cost the same at any stride
+                long samplingStart = System.nanoTime();
+                applySamplingStride();
+                byte[] mask;
+                if (rawDetection) {
+                    //an integer compare, the threshold is converted once per conditions change
+                    mask = classifyRaw(raw, width, height, rawThreshold(conditions));
+                } else {
+                    frameStats = detector.detect(temperatures, width, height, (float) conditions.getDewPointKelvin());
+                    mask = detector.getMask();
+                    regionLabeler.label(mask, temperatures, width, height);
+                    incrementalFrame = false;
+                }
+                stageStart = timings.record(PipelineTimings.Stage.DETECTION, stageStart);
+                if (adaptiveSamplingEnabled) {
+                    adaptiveSampling.record(stageStart - samplingStart);
+                }
+                //the thermal image is new every frame, so the dots are always drawn again
+                overlay.draw(msxBitmap, mask, width, height);
+                stageStart = timings.record(PipelineTimings.Stage.OVERLAY, stageStart);
+                if (recorder != null) {
+                    //copies into the mapped file, a frame the recorder can not take is dropped from the recording only
+                    recorder.append(timestampMillis, raw, width, height, rawScale, conditions);
+                }
 
 
                 //Get a bitmap with the visual image, it might have different dimensions then the bitmap from THERMAL_ONLY
-                Bitmap dcBitmap = BitmapAndroid.createBitmap(thermalImage.getFusion().getPhoto()).getBitMap();
-                //System.out.println(dcBitmap.getWidth()+" "+dcBitmap.getHeight());
-                Log.d(TAG, "adding images to cache");
-                streamDataListener.images(msxBitmap, dcBitmap,minC,maxC);
+                //only done when someone asked for it, decoding the photo roughly doubles the cost of a frame
+                Bitmap dcBitmap = null;
+                if (takeVisualImageRequest()) {
+                    dcBitmap = toPooledBitmap(thermalImage.getFusion().getPhoto());
+                }
+                processedFrames++;
+                FrameDataHolder frame = framePool.acquire();
+                frame.set(msxBitmap, dcBitmap, minC, maxC);
+                RiskRegions regions = regionLabeler.getRegions();
+                frame.setRiskRegions(regions.getCount(), regions.getLargestFraction());
+                frame.detectionDensity = frameStats.getDensity();
+                SnapshotExporter exporter = snapshotExporter;
+                if (exporter != null) {
+                    //copies the bitmaps, encoding and writing happen on the exporter's thread
+                    exporter.capture(frame, conditions, timestampMillis);
+                }
+                frame.receivedNanos = receivedNanos;
+                frame.offeredNanos = System.nanoTime();
+                streamDataListener.images(frame);
             }
 
         }
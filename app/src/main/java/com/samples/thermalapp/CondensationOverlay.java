@@ -0,0 +1,40 @@
+package com.samples.thermalapp;
+
+import android.graphics.Bitmap;
+
+import com.samples.thermalapp.detection.OverlayRenderer;
+
+/**
+ * Draws the condensation risk dots on top of the thermal image.
+ * <p>
+ * The dots are rendered into an {@code int[]} pixel buffer that is copied out of and back into the {@link Bitmap}
+ * with a single getPixels/setPixels pair per frame, instead of one {@link Bitmap#setPixel(int, int, int)} call per pixel.
+ */
+class CondensationOverlay extends OverlayRenderer {
+
+    //reused between frames, only reallocated when the bitmap size changes
+    private int[] pixels = new int[0];
+
+    /**
+     * Draw a dot on the bitmap for every sampled pixel at risk
+     *
+     * @param bitmap mutable bitmap with the same layout as the mask
+     * @param mask   risk mask from {@link com.samples.thermalapp.detection.CondensationDetector}, {@code width} values per row
+     * @return the number of dots drawn
+     */
+    public int draw(Bitmap bitmap, byte[] mask, int width, int height) {
+        int bitmapWidth = bitmap.getWidth();
+        int bitmapHeight = bitmap.getHeight();
+        int size = bitmapWidth * bitmapHeight;
+        if (pixels.length != size) {
+            pixels = new int[size];
+        }
+        bitmap.getPixels(pixels, 0, bitmapWidth, 0, 0, bitmapWidth, bitmapHeight);
+        int dots = render(pixels, bitmapWidth, mask, width,
+                Math.min(width, bitmapWidth), Math.min(height, bitmapHeight));
+        if (dots > 0) {
+            bitmap.setPixels(pixels, 0, bitmapWidth, 0, 0, bitmapWidth, bitmapHeight);
+        }
+        return dots;
+    }
+}
@@ -3,7 +3,7 @@
  * @file FrameDataHolder.java
  * @Author FLIR Systems AB
  *
- * @brief Container class that holds references to Bitmap images
+ * @brief Container class that holds references to Bitmap images, recycled through a FramePool
  *
  * Copyright 2019:    FLIR Systems
  ********************************************************************/
@@ -14,11 +14,68 @@ import android.graphics.Bitmap;
 
 class FrameDataHolder {
 
-    public final Bitmap msxBitmap;
-    public final Bitmap dcBitmap;
+    public Bitmap msxBitmap;
+    //visual image, null unless it was requested from the CameraHandler for this frame
+    public Bitmap dcBitmap;
+    //scale of the thermal image in Celsius, NaN when unknown
+    public double minTemperature;
+    public double maxTemperature;
+    //number of condensation risk regions and the share of the frame covered by the largest one
+    public int riskRegions;
+    public double largestRiskRegion;
+    //share of the pixels that were classified, below 1 while the adaptive mode samples the frame
+    public double detectionDensity;
+    //System.nanoTime() when the camera delivered the frame and when it was handed to the UI, 0 when unknown
+    public long receivedNanos;
+    public long offeredNanos;
+
+    //the pool this frame goes back to on release(), null for frames that are not pooled
+    private final FramePool pool;
 
     FrameDataHolder(Bitmap msxBitmap, Bitmap dcBitmap){
+        this(msxBitmap, dcBitmap, Double.NaN, Double.NaN);
+    }
+
+    FrameDataHolder(Bitmap msxBitmap, Bitmap dcBitmap, double minTemperature, double maxTemperature){
+        this.pool = null;
+        set(msxBitmap, dcBitmap, minTemperature, maxTemperature);
+    }
+
+    FrameDataHolder(FramePool pool){
+        this.pool = pool;
+        set(null, null, Double.NaN, Double.NaN);
+    }
+
+    void set(Bitmap msxBitmap, Bitmap dcBitmap, double minTemperature, double maxTemperature){
         this.msxBitmap = msxBitmap;
         this.dcBitmap = dcBitmap;
+        this.minTemperature = minTemperature;
+        this.maxTemperature = maxTemperature;
+        this.riskRegions = 0;
+        this.largestRiskRegion = 0;
+        this.detectionDensity = 1;
+        this.receivedNanos = 0;
+        this.offeredNanos = 0;
+    }
+
+    void setRiskRegions(int riskRegions, double largestRiskRegion){
+        this.riskRegions = riskRegions;
+        this.largestRiskRegion = largestRiskRegion;
+    }
+
+    /**
+     * Whether this frame carries the visual image, see {@link CameraHandler#requestVisualImage()}
+     */
+    boolean hasVisualImage(){
+        return dcBitmap != null;
+    }
+
+    /**
+     * Give the frame and its bitmaps back to the pool once nothing shows them any more, does nothing for frames that are not pooled
+     */
+    void release(){
+        if (pool != null) {
+            pool.release(this);
+        }
     }
 }
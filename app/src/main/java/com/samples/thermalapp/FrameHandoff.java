@@ -0,0 +1,65 @@
+package com.samples.thermalapp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Single slot handoff of frames from the camera thread to the UI thread where the newest frame wins.
+ * <p>
+ * The camera thread never blocks: a frame that was not picked up before the next one arrives is replaced and counted as dropped.
+ */
+class FrameHandoff<T> {
+
+    private final AtomicReference<T> slot = new AtomicReference<>();
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong taken = new AtomicLong();
+
+    /**
+     * Publish a new frame, replacing the one waiting in the slot if the consumer has not taken it yet
+     *
+     * @return the replaced frame, or {@code null} if the slot was empty and the consumer has to be notified
+     */
+    public T offer(T frame) {
+        offered.incrementAndGet();
+        T replaced = slot.getAndSet(frame);
+        if (replaced != null) {
+            dropped.incrementAndGet();
+        }
+        return replaced;
+    }
+
+    /**
+     * Take the newest frame out of the slot
+     *
+     * @return the frame, or {@code null} if there is no new frame since the last call
+     */
+    public T take() {
+        T frame = slot.getAndSet(null);
+        if (frame != null) {
+            taken.incrementAndGet();
+        }
+        return frame;
+    }
+
+    /**
+     * Number of frames handed to {@link #offer(Object)}
+     */
+    public long getOfferedCount() {
+        return offered.get();
+    }
+
+    /**
+     * Number of frames replaced by a newer frame before they were taken
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Number of frames taken by the consumer, ie displayed
+     */
+    public long getDisplayedCount() {
+        return taken.get();
+    }
+}
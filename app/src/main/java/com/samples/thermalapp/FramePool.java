@@ -0,0 +1,61 @@
+package com.samples.thermalapp;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+
+/**
+ * Recycles {@link FrameDataHolder}s and their bitmaps between the camera thread and the UI.
+ * <p>
+ * At most three frames are in use while streaming: the one the camera is filling, the one waiting in the
+ * {@link FrameHandoff} and the one shown by the ImageView. A frame goes back to the pool with {@link FrameDataHolder#release()}
+ * once it has been replaced on screen or dropped from the handoff.
+ */
+class FramePool {
+
+    //camera, handoff and screen
+    static final int FRAMES_IN_FLIGHT = 3;
+
+    private final BitmapPool bitmaps;
+    private final ArrayDeque<FrameDataHolder> free = new ArrayDeque<>(FRAMES_IN_FLIGHT);
+    private int created = 0;
+
+    FramePool() {
+        //a thermal and, when requested, a visual bitmap per frame
+        bitmaps = new BitmapPool(FRAMES_IN_FLIGHT * 2);
+    }
+
+    /**
+     * Get an empty frame, the bitmaps have to be set with {@link FrameDataHolder#set(Bitmap, Bitmap, double, double)}
+     */
+    public synchronized FrameDataHolder acquire() {
+        FrameDataHolder frame = free.poll();
+        if (frame == null) {
+            created++;
+            frame = new FrameDataHolder(this);
+        }
+        return frame;
+    }
+
+    public BitmapPool getBitmapPool() {
+        return bitmaps;
+    }
+
+    /**
+     * Number of frame holders allocated so far, stays flat once the pool is warm
+     */
+    public synchronized int getCreatedCount() {
+        return created;
+    }
+
+    void release(FrameDataHolder frame) {
+        bitmaps.release(frame.msxBitmap);
+        bitmaps.release(frame.dcBitmap);
+        frame.set(null, null, Double.NaN, Double.NaN);
+        synchronized (this) {
+            if (free.size() < FRAMES_IN_FLIGHT) {
+                free.add(frame);
+            }
+        }
+    }
+}
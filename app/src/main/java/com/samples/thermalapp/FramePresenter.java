@@ -0,0 +1,143 @@
+package com.samples.thermalapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import java.util.Locale;
+
+/**
+ * Shows the newest camera frame once per display frame.
+ * <p>
+ * Instead of posting a Runnable for every camera frame, the presenter is called by the {@link Choreographer} on the next vsync
+ * after a frame arrived in the empty {@link FrameHandoff}, see {@link #frameOffered()}, and picks up whatever frame is waiting
+ * by then. Without new frames no callback is posted, so an idle presenter does not wake up the UI thread on every vsync.
+ * The min/max labels are only updated when the values change. All methods but {@link #frameOffered()} have to be called on
+ * the UI thread.
+ * <p>
+ * The presenter records the handoff, display and total stages of the {@link PipelineTimings} and, while the latency
+ * overlay is shown, refreshes it at most twice a second together with the detection density of the frame on screen.
+ */
+class FramePresenter implements Choreographer.FrameCallback {
+
+    private final FrameHandoff<FrameDataHolder> frames;
+    private final ImageView image;
+    private final TextView minTemperature;
+    private final TextView maxTemperature;
+    private final PipelineTimings timings;
+    //shows the timings, null while hidden
+    private TextView latencyOverlay;
+    private long overlayUpdatedNanos;
+
+    private boolean running = false;
+    //a frame callback is posted and not run yet
+    private boolean armed = false;
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    //the Choreographer of the UI thread can only be used from the UI thread
+    private final Runnable arm = this::arm;
+    //frame currently shown by the image view
+    private FrameDataHolder displayedFrame = null;
+    private double shownMin = Double.NaN;
+    private double shownMax = Double.NaN;
+
+    //formatting the overlay costs more than a frame is worth
+    private static final long OVERLAY_INTERVAL_NANOS = 500_000_000L;
+
+    FramePresenter(FrameHandoff<FrameDataHolder> frames, ImageView image, TextView minTemperature, TextView maxTemperature, PipelineTimings timings) {
+        this.frames = frames;
+        this.image = image;
+        this.minTemperature = minTemperature;
+        this.maxTemperature = maxTemperature;
+        this.timings = timings;
+    }
+
+    /**
+     * Show the pipeline timings in {@code overlay}, null stops updating it
+     */
+    public void setLatencyOverlay(TextView overlay) {
+        latencyOverlay = overlay;
+        overlayUpdatedNanos = 0;
+    }
+
+    /**
+     * Start presenting frames on every display frame
+     */
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        //picks up a frame that arrived while stopped
+        arm();
+    }
+
+    /**
+     * Stop presenting, frames keep replacing each other in the handoff until started again
+     */
+    public void stop() {
+        running = false;
+        armed = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    /**
+     * Present the handoff's frame on the next display frame, to be called from any thread whenever
+     * {@link FrameHandoff#offer(Object)} filled the empty slot
+     */
+    public void frameOffered() {
+        uiHandler.post(arm);
+    }
+
+    private void arm() {
+        if (!running || armed) {
+            return;
+        }
+        armed = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        armed = false;
+        if (!running) {
+            return;
+        }
+
+        if (latencyOverlay != null && frameTimeNanos - overlayUpdatedNanos >= OVERLAY_INTERVAL_NANOS) {
+            overlayUpdatedNanos = frameTimeNanos;
+            String density = displayedFrame == null ? "" : String.format(Locale.US, "\ndensity   %6.1f %%", displayedFrame.detectionDensity * 100);
+            latencyOverlay.setText(timings.summary() + density);
+        }
+
+        FrameDataHolder frame = frames.take();
+        if (frame == null) {
+            return;
+        }
+        long displayStart = frame.offeredNanos != 0 ? timings.record(PipelineTimings.Stage.HANDOFF, frame.offeredNanos) : System.nanoTime();
+        image.setImageBitmap(frame.msxBitmap);
+        //photoImage.setImageBitmap(frame.dcBitmap);
+        if (frame.maxTemperature > -8) {
+            //compared as bits so NaN counts as unchanged, the labels are only formatted when they change
+            if (Double.doubleToLongBits(frame.minTemperature) != Double.doubleToLongBits(shownMin)) {
+                shownMin = frame.minTemperature;
+                minTemperature.setText(String.valueOf(shownMin));
+            }
+            if (Double.doubleToLongBits(frame.maxTemperature) != Double.doubleToLongBits(shownMax)) {
+                shownMax = frame.maxTemperature;
+                maxTemperature.setText(String.valueOf(shownMax));
+            }
+        }
+        timings.record(PipelineTimings.Stage.DISPLAY, displayStart);
+        if (frame.receivedNanos != 0) {
+            timings.record(PipelineTimings.Stage.TOTAL, frame.receivedNanos);
+        }
+
+        //the image view no longer shows the previous frame, so it can be filled again by the camera
+        if (displayedFrame != null) {
+            displayedFrame.release();
+        }
+        displayedFrame = frame;
+    }
+}
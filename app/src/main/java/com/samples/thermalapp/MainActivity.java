@@ -3,6 +3,8 @@ package com.samples.thermalapp;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.View;
@@ -25,10 +27,11 @@ import com.flir.thermalsdk.live.Identity;
 import com.flir.thermalsdk.live.connectivity.ConnectionStatusListener;
 import com.flir.thermalsdk.live.discovery.DiscoveryEventListener;
 import com.flir.thermalsdk.log.ThermalLog;
+import com.samples.thermalapp.detection.AmbientConditions;
+import com.samples.thermalapp.recording.RawRecorder;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import androidx.appcompat.app.AppCompatActivity;
 
@@ -57,21 +60,29 @@ public class MainActivity extends AppCompatActivity {
     private TextView maxTemperature;
 
     private ImageView msxImage;
+    private TextView latencyOverlay;
     private Boolean CONNECT = true;
-    private LinkedBlockingQueue<FrameDataHolder> framesBuffer = new LinkedBlockingQueue(21);
+    //latest frame wins, see getDroppedFrames() and getDisplayedFrames()
+    private final FrameHandoff<FrameDataHolder> framesBuffer = new FrameHandoff<>();
+    //shows the newest frame once per display frame
+    private FramePresenter framePresenter;
     private UsbPermissionHandler usbPermissionHandler = new UsbPermissionHandler();
 
-    private static double CutoffTemperature = 20;
-    private static double CutoffHumidity = 100;
-    private static double CutoffDewPoint = 293.15;
-
-    private volatile boolean newData = false;
     private volatile boolean isUpdatingFromSensor = true;
     private int SensorID = 1;
 
     EditText cutoffTemperatureInput;
     EditText cutoffHumidityInput;
     Switch cameraSwitch;
+    Switch sensorSwitch;
+    //polls the room sensors while the sensor switch is on and the activity is in the foreground
+    private SensorPoller sensorPoller;
+    //newest samples of all sensors, so switching sensors does not have to wait for the next poll
+    private SensorSamples sensorSamples;
+    private boolean resumed = false;
+    //where recordings are stored
+    private FileHandler fileHandler;
+    private SnapshotExporter snapshotExporter;
     ToggleButton cameraToggleButton;
 
     /**
@@ -81,8 +92,18 @@ public class MainActivity extends AppCompatActivity {
         void show(String message);
     }
 
-    public static double GetCutoffDewPoint() {
-        return CutoffDewPoint;
+    /**
+     * Number of camera frames that were replaced by a newer one before the UI could show them
+     */
+    public long getDroppedFrames() {
+        return framesBuffer.getDroppedCount();
+    }
+
+    /**
+     * Number of camera frames shown on screen
+     */
+    public long getDisplayedFrames() {
+        return framesBuffer.getDisplayedCount();
     }
 
     @Override
@@ -105,6 +126,9 @@ public class MainActivity extends AppCompatActivity {
                 } else {
                     SensorID =1;
                 }
+                if (sensorSamples != null) {
+                    onSensorSamples(sensorSamples);
+                }
             }
         });
 
@@ -118,15 +142,16 @@ public class MainActivity extends AppCompatActivity {
                                     event.getKeyCode() == KeyEvent.KEYCODE_ENTER) {
                         if (event == null || !event.isShiftPressed()) {
                             // the user is done typing.
-                            //saves the input
-                            CutoffTemperature = Double.valueOf(cutoffTemperatureInput.getText().toString()) + 273.15;
+                            //saves the input, the humidity of the current conditions is kept
+                            try {
+                                double temperature = Double.parseDouble(cutoffTemperatureInput.getText().toString().trim());
+                                publishConditions(cameraHandler.getAmbientConditions().withTemperature(temperature, System.currentTimeMillis(), AmbientConditions.Source.MANUAL));
+                            } catch (IllegalArgumentException e) {
+                                showMessage.show("Invalid temperature: " + e.getMessage());
+                            }
                             //closes keyboard
                             InputMethodManager imm = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
                             imm.hideSoftInputFromWindow(v.getWindowToken(), 0);
-                            //updates dew point
-                            double CutoffDewPointCelcius = ((Math.pow((CutoffHumidity / 100), 1.0 / 8.0) * (112 + .9 * (CutoffTemperature - 273.15))) + ((.1 * (CutoffTemperature - 273.15)) - 112));
-                            CutoffDewPoint =CutoffDewPointCelcius + 273.15;
-                            ((TextView) findViewById(R.id.DewPointDisplay)).setText(String.format("%.3f %n", CutoffDewPointCelcius));
                             return true; // consume.
                         }
                     }
@@ -144,41 +169,16 @@ public class MainActivity extends AppCompatActivity {
                                     event.getKeyCode() == KeyEvent.KEYCODE_ENTER) {
                         if (event == null || !event.isShiftPressed()) {
                             // the user is done typing.
-                            //saves the input
-                            CutoffHumidity = Double.valueOf(cutoffHumidityInput.getText().toString());
-                            //system.out.println("Humidity input" + CutoffHumidity);
+                            //saves the input, the temperature of the current conditions is kept
+                            try {
+                                double humidity = Double.parseDouble(cutoffHumidityInput.getText().toString().trim());
+                                publishConditions(cameraHandler.getAmbientConditions().withHumidity(humidity, System.currentTimeMillis(), AmbientConditions.Source.MANUAL));
+                            } catch (IllegalArgumentException e) {
+                                showMessage.show("Invalid humidity: " + e.getMessage());
+                            }
                             //closes keyboard
-                            //v.setCursorVisible(false);
                             InputMethodManager imm = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
                             imm.hideSoftInputFromWindow(v.getWindowToken(), 0);
-
-                            //calculate dew point
-                            //CutoffDewPoint = ((Math.pow((CutoffHumidity / 100), (1.0 / 8.0)) * (112 + .9 * CutoffTemperature)) + ((.1 * CutoffTemperature) - 112));
-                            double CutoffDewPointCelcius = ((Math.pow((CutoffHumidity / 100), 1.0 / 8.0) * (112 + .9 * (CutoffTemperature - 273.15))) + ((.1 * (CutoffTemperature - 273.15)) - 112));
-                            //double CutoffDewPointCelcius = CutoffDewPoint -273.15;
-                            CutoffDewPoint = CutoffDewPointCelcius +273.15;
-
-                            //weird edge case where we get temp data in C instead of in K
-                            //system.out.println("h_dpk" + CutoffDewPoint);
-                            //system.out.println("h_dpC" + CutoffDewPointCelcius);
-                            //system.out.println("h_temp" + CutoffTemperature);
-                            //system.out.println("h_hum" + CutoffHumidity);
-
-//                            if(CutoffDewPointCelcius < 0)
-//                            {
-//                                CutoffDewPointCelcius = CutoffDewPoint;
-//                                CutoffDewPoint = 273.15 +CutoffDewPointCelcius;
-//                                //system.out.println("dpk" + CutoffDewPoint);
-//                                //system.out.println("dpC2" + CutoffDewPointCelcius);
-//                                //system.out.println("dpk" + CutoffDewPoint);
-//                                //system.out.println("dpK2" + CutoffDewPoint);
-//
-//                            }
-
-                            ((TextView) findViewById(R.id.DewPointDisplay)).setText(String.format("%.3f %n", CutoffDewPointCelcius));
-
-
-
                             return true; // consume.
                         }
                     }
@@ -199,7 +199,22 @@ public class MainActivity extends AppCompatActivity {
         cameraHandler = new CameraHandler();
 
         setupViews();
-        startMultithreading();
+
+        sensorPoller = new SensorPoller(() -> SensorHandler.FetchSamples(1), new Handler(Looper.getMainLooper()), sensorListener);
+        //sensor toggle switch
+        sensorSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> updateSensorPolling());
+
+        //long press on the thermal image starts and stops recording the raw frames
+        fileHandler = new FileHandler(getApplicationContext());
+        msxImage.setOnLongClickListener(v -> {
+            toggleRecording();
+            return true;
+        });
+
+        //a tap saves the thermal image as shown, the visual image and the conditions
+        snapshotExporter = new SnapshotExporter(fileHandler.getImageStoragePath(), new Handler(Looper.getMainLooper()), snapshotListener);
+        cameraHandler.setSnapshotExporter(snapshotExporter);
+        msxImage.setOnClickListener(v -> cameraHandler.takeSnapshots(1, true));
 
         //connection toggle switch
         cameraSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
@@ -214,6 +229,36 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        framePresenter.start();
+        resumed = true;
+        updateSensorPolling();
+    }
+
+    @Override
+    protected void onPause() {
+        //no need to wake up on every display frame while nothing is visible
+        framePresenter.stop();
+        //no polling in the background, it resumes with onResume
+        resumed = false;
+        sensorPoller.stop();
+        super.onPause();
+    }
+
+    @Override
+    protected void onDestroy() {
+        //complete the recording first, a file that is never closed has no frame count, no index and a stale end of data
+        cameraHandler.stopRecording();
+        sensorPoller.shutdown();
+        //queued snapshots are still written
+        cameraHandler.setSnapshotExporter(null);
+        snapshotExporter.shutdown();
+        cameraHandler.shutdown();
+        super.onDestroy();
+    }
+
     public void startDiscovery(View view) {
         startDiscovery();
     }
@@ -378,63 +423,26 @@ public class MainActivity extends AppCompatActivity {
 
         @Override
         public void images(FrameDataHolder dataHolder) {
-            runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    msxImage.setImageBitmap(dataHolder.msxBitmap);
-                }
-            });
+            //never blocks the camera thread, a frame the UI did not get to yet is replaced by the new one
+            //the framePresenter picks it up on the next display frame
+            FrameDataHolder replaced = framesBuffer.offer(dataHolder);
+            if (replaced != null) {
+                //never shown, its bitmaps can be reused right away
+                replaced.release();
+            } else {
+                //the slot was empty, so no display frame is waiting for it yet
+                framePresenter.frameOffered();
+            }
         }
 
         @Override
         public void images(Bitmap msxBitmap, Bitmap dcBitmap) {
-
-            try {
-                Log.d(TAG, "loading bitmap");
-                framesBuffer.put(new FrameDataHolder(msxBitmap, dcBitmap));
-            } catch (InterruptedException e) {
-                //if interrupted while waiting for adding a new item in the queue
-                Log.e(TAG, "images(), unable to add incoming images to frames buffer, exception:" + e);
-            }
-
-            runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    Log.d(TAG, "framebuffer size:" + framesBuffer.size());
-                    FrameDataHolder poll = framesBuffer.poll();
-                    msxImage.setImageBitmap(poll.msxBitmap);
-                    //photoImage.setImageBitmap(poll.dcBitmap);
-                }
-            });
-
+            images(new FrameDataHolder(msxBitmap, dcBitmap));
         }
 
         @Override
-        public void images(Bitmap msxBitmap, Bitmap dcBitmap, Double minC, Double maxC) {
-
-            try {
-                Log.d(TAG, "loading bitmap");
-                framesBuffer.put(new FrameDataHolder(msxBitmap, dcBitmap));
-            } catch (InterruptedException e) {
-                //if interrupted while waiting for adding a new item in the queue
-                Log.e(TAG, "images(), unable to add incoming images to frames buffer, exception:" + e);
-            }
-
-            runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    Log.d(TAG, "framebuffer size:" + framesBuffer.size());
-                    FrameDataHolder poll = framesBuffer.poll();
-                    msxImage.setImageBitmap(poll.msxBitmap);
-                    if (maxC > -8) {
-                        minTemperature.setText(String.valueOf(minC));
-                        maxTemperature.setText(String.valueOf(maxC));
-                    }
-
-                    //photoImage.setImageBitmap(poll.dcBitmap);
-                }
-            });
-
+        public void images(Bitmap msxBitmap, Bitmap dcBitmap, double minC, double maxC) {
+            images(new FrameDataHolder(msxBitmap, dcBitmap, minC, maxC));
         }
     };
 
@@ -480,67 +488,130 @@ public class MainActivity extends AppCompatActivity {
     private void setupViews() {
 
         cameraSwitch = (Switch) findViewById(R.id.switch3);
+        sensorSwitch = (Switch) findViewById(R.id.switch1);
         minTemperature = findViewById(R.id.MinimumC);
         maxTemperature = findViewById(R.id.MaximumC);
         msxImage = findViewById(R.id.msx_image);
+        latencyOverlay = findViewById(R.id.latency_overlay);
+        framePresenter = new FramePresenter(framesBuffer, msxImage, minTemperature, maxTemperature, cameraHandler.getTimings());
+        //long press on the palette shows the pipeline latency, hiding it again saves the numbers to a file
+        findViewById(R.id.imageView).setOnLongClickListener(v -> {
+            toggleLatencyOverlay();
+            return true;
+        });
     }
 
-    //multithreading to read from sensor
-    public void startMultithreading() {
-        Thread t = new Thread() {
-            @Override
-            public void run() {
-                try {
-                    while (!isInterrupted()) {
-                        Thread.sleep(1000);
-                        Switch s = findViewById(R.id.switch1);
-                        while (s.isChecked()) {
-                            //calls methods to read from the sensors and collect output
-                            String key = SensorHandler.Authenticate();
-                            ArrayList<Double> output = SensorHandler.QuerySamples(key,SensorID);
-                            //thread saftey
-                            newData = true;
-                            runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    if (newData == true) {
-                                        //update UI on UI thread
-                                        updateUIFromSensor(output.get(0), output.get(1));
-                                        newData = false;
-                                    }
-                                }
-                            });
-                        }
+    private void toggleLatencyOverlay() {
+        if (latencyOverlay.getVisibility() != View.VISIBLE) {
+            latencyOverlay.setVisibility(View.VISIBLE);
+            framePresenter.setLatencyOverlay(latencyOverlay);
+            return;
+        }
+        latencyOverlay.setVisibility(View.GONE);
+        framePresenter.setLatencyOverlay(null);
+        try {
+            File file = cameraHandler.getTimings().dump(fileHandler.getImageStoragePath());
+            showMessage.show("Latency saved to " + file.getName());
+        } catch (IOException e) {
+            Log.e(TAG, "could not save latency", e);
+            showMessage.show("Could not save latency: " + e.getMessage());
+        }
+    }
+
+    private final SnapshotExporter.Listener snapshotListener = new SnapshotExporter.Listener() {
+        @Override
+        public void onSaved(File thermalImage) {
+            showMessage.show("Saved " + thermalImage.getName());
+        }
 
+        @Override
+        public void onDropped(int frames) {
+            showMessage.show("Snapshot skipped, still saving the last one");
+        }
 
-                    }
-                } catch (InterruptedException | IOException e) {
-                }
-            }
-        };
+        @Override
+        public void onFailed(IOException error) {
+            showMessage.show("Could not save snapshot: " + error.getMessage());
+        }
+    };
 
-        t.start();
+    /**
+     * Start recording the raw camera frames, or stop the running recording
+     */
+    private void toggleRecording() {
+        if (cameraHandler.isRecording()) {
+            RawRecorder recorder = cameraHandler.stopRecording();
+            showMessage.show("Recording stopped, " + recorder.getFrameCount() + " frames, " + recorder.getDroppedFrames() + " dropped");
+            return;
+        }
+        try {
+            File file = cameraHandler.startRecording(fileHandler.getImageStoragePath());
+            showMessage.show("Recording to " + file.getName());
+        } catch (IOException e) {
+            Log.e(TAG, "could not start recording", e);
+            showMessage.show("Could not start recording: " + e.getMessage());
+        }
     }
 
+    /**
+     * Poll the sensors only while the sensor switch is on and the activity is resumed
+     */
+    private void updateSensorPolling() {
+        if (sensorSwitch.isChecked() && resumed) {
+            sensorPoller.start();
+        } else {
+            sensorPoller.stop();
+        }
+    }
 
-    private void updateUIFromSensor(Double temperature, Double humidity) {
+    /**
+     * Called on the UI thread with the newest samples of all sensors
+     */
+    private final SensorPoller.Listener sensorListener = new SensorPoller.Listener() {
+        @Override
+        public void onSamples(SensorSamples samples) {
+            onSensorSamples(samples);
+        }
 
-        //changes from F to C
-        CutoffTemperature = (temperature - 32) * (5.0 / 9.0);
+        @Override
+        public void onPollFailed(Exception e, int consecutiveFailures) {
+            //only the first failure of a streak, the poller keeps retrying on its own
+            if (consecutiveFailures == 1) {
+                showMessage.show("Sensor update failed: " + e.getMessage());
+            }
+        }
+    };
+
+    private void onSensorSamples(SensorSamples samples) {
+        sensorSamples = samples;
+        int sensor = SensorID - 1;
+        if (samples.getCount(sensor) == 0) {
+            return;
+        }
+        try {
+            updateUIFromSensor(samples.getTemperature(sensor, 0), samples.getHumidity(sensor, 0), samples.getObservedMillis(sensor, 0));
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "ignoring invalid sensor sample: " + e.getMessage());
+        }
+    }
+
+
+    private void updateUIFromSensor(double temperature, double humidity, long observedMillis) {
+        //the sensors report Fahrenheit
+        AmbientConditions conditions = new AmbientConditions(AmbientConditions.fahrenheitToCelsius(temperature), humidity, observedMillis, AmbientConditions.Source.SENSOR);
 
         //Updates UI text view components
-        CutoffHumidity = humidity;
-        ((TextView) findViewById(R.id.CutoffHumidityInput)).setText(String.format("%.1f %n", CutoffHumidity));
-        ((TextView) findViewById(R.id.CutoffTermperatureInput)).setText(String.format("%.1f %n", CutoffTemperature));
-
-        //calculates dew point
-        double CutoffDewPointCelcius = ((Math.pow((CutoffHumidity / 100), 1.0 / 8.0) * (112 + .9 * CutoffTemperature)) + ((.1 * CutoffTemperature) - 112));
-        //updates UI text view comonents
-        ((TextView) findViewById(R.id.DewPointDisplay)).setText(String.format("%.3f %n", CutoffDewPointCelcius));
-
-        //always save in K
-        CutoffDewPoint = 273.15 + CutoffDewPointCelcius;
-        CutoffTemperature = 273.15+CutoffTemperature;
+        ((TextView) findViewById(R.id.CutoffHumidityInput)).setText(String.format("%.1f %n", conditions.getHumidity()));
+        ((TextView) findViewById(R.id.CutoffTermperatureInput)).setText(String.format("%.1f %n", conditions.getTemperature()));
+        publishConditions(conditions);
+    }
+
+    /**
+     * Hand new room conditions to the camera as one snapshot and show their dew point, called on the UI thread only
+     */
+    private void publishConditions(AmbientConditions conditions) {
+        cameraHandler.setAmbientConditions(conditions);
+        ((TextView) findViewById(R.id.DewPointDisplay)).setText(String.format("%.3f %n", conditions.getDewPoint()));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package com.samples.thermalapp;
+
+import android.os.Build;
+
+import com.samples.thermalapp.detection.LatencyHistogram;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Latency of every stage of the camera to screen pipeline, one {@link LatencyHistogram} per {@link Stage}.
+ * <p>
+ * A stage is timed with two {@link System#nanoTime()} calls and a histogram update, cheap enough to stay on in release
+ * builds. The camera stages are recorded on the camera thread and the handoff and display stages on the UI thread.
+ */
+class PipelineTimings {
+
+    enum Stage {
+        //from the SDK's image callback until withImage hands over the image
+        WITH_IMAGE("withImage"),
+        //copying the coloured thermal image into a bitmap, palette settings included
+        BITMAP("bitmap"),
+        GET_VALUES("getValues"),
+        //raw conversion, classification and region labelling
+        DETECTION("threshold"),
+        OVERLAY("overlay"),
+        //waiting in the FrameHandoff for the next display frame
+        HANDOFF("handoff"),
+        //setting the bitmap and labels on the UI thread
+        DISPLAY("display"),
+        //from the SDK's image callback until the frame is set on screen
+        TOTAL("total");
+
+        final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+
+    PipelineTimings() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Record a stage that started at {@code startNanos}
+     *
+     * @return now, the start of the next stage
+     */
+    public long record(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        histograms[stage.ordinal()].record((now - startNanos) / 1000);
+        return now;
+    }
+
+    public LatencyHistogram get(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * One line per stage with its p50, p99 and max in milliseconds, for the debug overlay
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder(STAGES.length * 40);
+        summary.append(String.format(Locale.US, "%-10s %7s %7s %7s", "ms", "p50", "p99", "max"));
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = get(stage);
+            summary.append('\n').append(String.format(Locale.US, "%-10s %7.2f %7.2f %7.2f", stage.label,
+                    histogram.getPercentile(50) / 1000.0, histogram.getPercentile(99) / 1000.0, histogram.getMax() / 1000.0));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Write the percentiles of every stage and the device model to a new file in {@code directory}
+     *
+     * @return the file
+     */
+    public File dump(File directory) throws IOException {
+        Date now = new Date();
+        File file = new File(directory, "latency-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(now) + ".txt");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write("device " + Build.MANUFACTURER + " " + Build.MODEL + ", android " + Build.VERSION.SDK_INT + "\n");
+            writer.write("time " + now + "\n");
+            writer.write(String.format(Locale.US, "%-10s %8s %8s %8s %8s %8s %8s %8s%n",
+                    "stage", "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+            for (Stage stage : STAGES) {
+                LatencyHistogram histogram = get(stage);
+                writer.write(String.format(Locale.US, "%-10s %8d %8.0f %8d %8d %8d %8d %8d%n", stage.label,
+                        histogram.getCount(), histogram.getCount() == 0 ? 0 : histogram.getMean(), histogram.getPercentile(50),
+                        histogram.getPercentile(90), histogram.getPercentile(99), histogram.getPercentile(99.9), histogram.getMax()));
+            }
+            writer.write("values in microseconds\n");
+        }
+        return file;
+    }
+}
@@ -0,0 +1,156 @@
+package com.samples.thermalapp;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * Single pass parser for the /samples response of the sensor backend.
+ * <p>
+ * The response is pulled token by token from the stream with a {@link JsonReader}; timestamp, temperature and humidity
+ * of every sample of the sensors in the target {@link SensorSamples} go straight into its primitive arrays, everything else
+ * is skipped without building a JSON tree.
+ * <pre>
+ * {"sensors": {"&lt;sensor id&gt;": [{"observed": "2019-09-04T15:42:50.000Z", "temperature": 71.2, "humidity": 40.1}, ...], ...}, ...}
+ * </pre>
+ */
+class SamplesParser {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private SamplesParser() {
+    }
+
+    /**
+     * Parse a response into {@code samples}, which is cleared first. The stream is not closed
+     *
+     * @throws IOException if the stream fails or the response is malformed
+     */
+    public static void parse(InputStream in, SensorSamples samples) throws IOException {
+        samples.clear();
+        JsonReader reader = new JsonReader(new InputStreamReader(in, UTF_8));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("sensors".equals(reader.nextName())) {
+                    readSensors(reader, samples);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (NumberFormatException | IllegalStateException e) {
+            //JsonReader reports a non numeric value or an unexpected structure with unchecked exceptions
+            throw new IOException("malformed sensor samples", e);
+        }
+    }
+
+    private static void readSensors(JsonReader reader, SensorSamples samples) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int sensor = samples.indexOf(reader.nextName());
+            if (sensor < 0) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readSample(reader, samples, sensor);
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+    }
+
+    private static void readSample(JsonReader reader, SensorSamples samples, int sensor) throws IOException {
+        long observed = 0;
+        double temperature = Double.NaN;
+        double humidity = Double.NaN;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if ("temperature".equals(name)) {
+                //nextDouble also accepts numbers sent as strings
+                temperature = reader.nextDouble();
+            } else if ("humidity".equals(name)) {
+                humidity = reader.nextDouble();
+            } else if ("observed".equals(name)) {
+                observed = parseTimestamp(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        samples.add(sensor, observed, temperature, humidity);
+    }
+
+    /**
+     * Parse an ISO 8601 timestamp like 2019-09-04T15:42:50.000Z or 2019-09-04T15:42:50+02:00 to milliseconds since the epoch.
+     * The offset can be Z, +hh:mm, +hhmm or +hh, a timestamp without one is taken as UTC
+     */
+    static long parseTimestamp(String value) throws IOException {
+        try {
+            int year = Integer.parseInt(value.substring(0, 4));
+            int month = Integer.parseInt(value.substring(5, 7));
+            int day = Integer.parseInt(value.substring(8, 10));
+            int hour = Integer.parseInt(value.substring(11, 13));
+            int minute = Integer.parseInt(value.substring(14, 16));
+            int second = Integer.parseInt(value.substring(17, 19));
+            int position = 19;
+            int millis = 0;
+            if (position < value.length() && value.charAt(position) == '.') {
+                int scale = 100;
+                position++;
+                while (position < value.length() && Character.isDigit(value.charAt(position))) {
+                    millis += (value.charAt(position) - '0') * scale;
+                    scale /= 10;
+                    position++;
+                }
+            }
+            int offsetMinutes = 0;
+            if (position < value.length() && value.charAt(position) == 'Z') {
+                position++;
+            } else if (position < value.length()) {
+                char sign = value.charAt(position);
+                if (sign != '+' && sign != '-') {
+                    throw new IllegalArgumentException("no offset at " + position);
+                }
+                offsetMinutes = Integer.parseInt(value.substring(position + 1, position + 3)) * 60;
+                position += 3;
+                if (position < value.length() && value.charAt(position) == ':') {
+                    position++;
+                }
+                if (position < value.length()) {
+                    offsetMinutes += Integer.parseInt(value.substring(position, position + 2));
+                    position += 2;
+                }
+                offsetMinutes *= sign == '-' ? -1 : 1;
+            }
+            if (position != value.length()) {
+                throw new IllegalArgumentException("trailing characters at " + position);
+            }
+            long days = daysFromCivil(year, month, day);
+            return ((days * 24 + hour) * 60 + minute - offsetMinutes) * 60_000L + second * 1000L + millis;
+        } catch (RuntimeException e) {
+            throw new IOException("invalid timestamp " + value, e);
+        }
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,20 @@
+package com.samples.thermalapp;
+
+import java.io.IOException;
+
+/**
+ * The sensor backend rejected the access token (HTTP 401 or 403)
+ */
+class SensorAuthException extends IOException {
+
+    private final int responseCode;
+
+    SensorAuthException(int responseCode) {
+        super("sensor backend rejected the access token, HTTP " + responseCode);
+        this.responseCode = responseCode;
+    }
+
+    public int getResponseCode() {
+        return responseCode;
+    }
+}
@@ -0,0 +1,208 @@
+package com.samples.thermalapp;
+
+import android.util.JsonReader;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP client for the sensor backend.
+ * <p>
+ * Connections are kept alive and reused across polls by the connection pool behind {@link HttpURLConnection}: every response
+ * is read to the end and closed, and a connection is only disconnected after a failure so a broken socket is not reused.
+ * Every request has a connect and read timeout so a poll can not hang the sensor thread on a bad network.
+ * URLs and request bodies that do not change are built once, the samples of all sensors are fetched in one request.
+ */
+class SensorClient {
+
+    static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(10);
+    static final int DEFAULT_READ_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(15);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    //sensor 1 and 2 of the toggle button
+    private static final String[] SENSOR_NAMES = {passwords.SENSORNAME1, passwords.SENSORNAME2};
+
+    private final URL authorizeUrl;
+    private final URL accessTokenUrl;
+    private final URL samplesUrl;
+    private final byte[] credentialsBody;
+    private final String password;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final SensorTokenCache tokenCache;
+    private final ConcurrentHashMap<Integer, byte[]> samplesBodies = new ConcurrentHashMap<>();
+
+    SensorClient(String baseUrl, String email, String password) throws IOException {
+        this(baseUrl, email, password, DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    SensorClient(String baseUrl, String email, String password, int connectTimeoutMillis, int readTimeoutMillis) throws IOException {
+        this.authorizeUrl = new URL(baseUrl + "/oauth/authorize");
+        this.accessTokenUrl = new URL(baseUrl + "/oauth/accesstoken");
+        this.samplesUrl = new URL(baseUrl + "/samples");
+        this.credentialsBody = ("{\"email\": " + JSONObject.quote(email) + ", \"password\": " + JSONObject.quote(password) + "}").getBytes(UTF_8);
+        this.password = password;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.tokenCache = new SensorTokenCache(this::authenticate);
+    }
+
+    public SensorTokenCache getTokenCache() {
+        return tokenCache;
+    }
+
+    /**
+     * Get a new access token, two round trips to the backend
+     */
+    public String authenticate() throws IOException {
+        String authorization = post(authorizeUrl, credentialsBody, null, in -> readStringField(in, "authorization"));
+        byte[] accessTokenBody = ("{\"authorization\": " + JSONObject.quote(authorization) + ", \"password\": " + JSONObject.quote(password) + "}").getBytes(UTF_8);
+        return post(accessTokenUrl, accessTokenBody, null, in -> readStringField(in, "accesstoken"));
+    }
+
+    /**
+     * Fetch the newest samples of all sensors with the cached access token, a rejected token is refreshed and the query retried once
+     *
+     * @param limit maximum number of samples per sensor
+     */
+    public SensorSamples fetchSamples(int limit) throws IOException {
+        String token = tokenCache.get();
+        try {
+            return fetchSamples(token, limit);
+        } catch (SensorAuthException e) {
+            tokenCache.invalidate(token);
+            return fetchSamples(tokenCache.get(), limit);
+        }
+    }
+
+    /**
+     * Fetch the newest samples of all sensors with the given access token, one request for all sensors
+     *
+     * @param limit maximum number of samples per sensor
+     */
+    public SensorSamples fetchSamples(String oauthKey, int limit) throws IOException {
+        SensorSamples samples = new SensorSamples(SENSOR_NAMES, limit);
+        post(samplesUrl, samplesBody(limit), oauthKey, in -> {
+            SamplesParser.parse(in, samples);
+            return samples;
+        });
+        return samples;
+    }
+
+    /**
+     * The request body for a limit, built once per limit as the poll always asks for the same number of samples
+     */
+    private byte[] samplesBody(int limit) {
+        byte[] body = samplesBodies.get(limit);
+        if (body == null) {
+            StringBuilder json = new StringBuilder("{\"limit\": ").append(limit).append(", \"sensors\": [");
+            for (int i = 0; i < SENSOR_NAMES.length; i++) {
+                json.append(i == 0 ? "" : ", ").append(JSONObject.quote(SENSOR_NAMES[i]));
+            }
+            body = json.append("]}").toString().getBytes(UTF_8);
+            samplesBodies.put(limit, body);
+        }
+        return body;
+    }
+
+    /**
+     * Reads a successful response body, the stream is closed by the client
+     */
+    interface ResponseReader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    /**
+     * POST a JSON body and read the response
+     *
+     * @param authorization access token, {@code null} for the authentication calls
+     */
+    private <T> T post(URL url, byte[] body, String authorization, ResponseReader<T> reader) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        try {
+            con.setConnectTimeout(connectTimeoutMillis);
+            con.setReadTimeout(readTimeoutMillis);
+            con.setRequestMethod("POST");
+            con.setRequestProperty("Content-Type", "application/json; utf-8");
+            con.setRequestProperty("Accept", "application/json");
+            con.setRequestProperty("Connection", "keep-alive");
+            if (authorization != null) {
+                con.setRequestProperty("Authorization", authorization);
+            }
+            con.setDoOutput(true);
+            con.setFixedLengthStreamingMode(body.length);
+            try (OutputStream os = con.getOutputStream()) {
+                os.write(body);
+            }
+
+            int responseCode = con.getResponseCode();
+            if (responseCode / 100 != 2) {
+                //drain the error body as well, otherwise the connection can not go back to the pool
+                drain(con.getErrorStream());
+                if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED || responseCode == HttpURLConnection.HTTP_FORBIDDEN) {
+                    throw new SensorAuthException(responseCode);
+                }
+                throw new IOException("sensor backend returned HTTP " + responseCode + " for " + url.getPath());
+            }
+            try (InputStream in = con.getInputStream()) {
+                T result = reader.read(in);
+                drain(in);
+                return result;
+            } catch (NumberFormatException | IllegalStateException e) {
+                //JsonReader reports a response with an unexpected structure or a non numeric value this way
+                throw new IOException("unexpected response for " + url.getPath(), e);
+            }
+        } catch (SensorAuthException e) {
+            throw e;
+        } catch (IOException e) {
+            //a timed out or broken connection must not be reused
+            con.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * Read a single string field of a JSON object without building a tree
+     */
+    private static String readStringField(InputStream in, String field) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, UTF_8));
+        String value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (field.equals(reader.nextName())) {
+                value = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (value == null) {
+            throw new IOException("response has no " + field);
+        }
+        return value;
+    }
+
+    /**
+     * Read the rest of a response so the connection can be reused
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[512];
+            while (stream.read(buffer) != -1) {
+                //discard
+            }
+        }
+    }
+}
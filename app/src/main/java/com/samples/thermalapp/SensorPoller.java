@@ -0,0 +1,197 @@
+package com.samples.thermalapp;
+
+import android.os.Handler;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the sensor backend at a fixed interval on its own scheduler thread and hands the samples to the UI thread.
+ * <p>
+ * Each poll schedules the next one after it finished, so requests never overlap and the rate does not depend on the round trip.
+ * After a failed poll the delay doubles up to {@link #MAX_BACKOFF_MILLIS}, with random jitter so several devices do not
+ * retry in lock step. {@link #start()} and {@link #stop()} are meant to follow the sensor switch and the activity lifecycle.
+ */
+class SensorPoller {
+
+    private static final String TAG = "SensorPoller";
+
+    //the sensors report about once a minute, polling faster only repeats the same sample
+    static final long DEFAULT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    static final long MIN_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(2);
+    static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Fetches samples, called on the poller thread
+     */
+    interface SampleSource {
+        SensorSamples fetch() throws IOException;
+    }
+
+    /**
+     * Receives samples and failed polls, called on the thread of the handler given to the poller
+     */
+    interface Listener {
+        void onSamples(SensorSamples samples);
+
+        /**
+         * A poll failed, polling goes on after the backoff delay
+         *
+         * @param consecutiveFailures number of polls in a row that failed, including this one
+         */
+        void onPollFailed(Exception e, int consecutiveFailures);
+    }
+
+    private final ScheduledExecutorService scheduler;
+    //jitter of the backoff, only used on the poller thread
+    private final Random random;
+    private final SampleSource source;
+    private final Handler handler;
+    private final Listener listener;
+    private volatile long intervalMillis = DEFAULT_INTERVAL_MILLIS;
+
+    //guarded by this, a poll of an older generation does not schedule the next one
+    private ScheduledFuture<?> next;
+    private int generation = 0;
+    private volatile boolean running = false;
+
+    //only used on the poller thread
+    private int consecutiveFailures = 0;
+    private volatile long polls = 0;
+    private volatile long failures = 0;
+
+    SensorPoller(SampleSource source, Handler handler, Listener listener) {
+        this(source, handler, listener, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        }), new Random());
+    }
+
+    /**
+     * @param scheduler runs the polls, must run them one at a time and is shut down with the poller
+     */
+    SensorPoller(SampleSource source, Handler handler, Listener listener, ScheduledExecutorService scheduler, Random random) {
+        this.source = source;
+        this.handler = handler;
+        this.listener = listener;
+        this.scheduler = scheduler;
+        this.random = random;
+    }
+
+    /**
+     * Time between two successful polls, takes effect after the next poll
+     */
+    public void setInterval(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("interval must be positive, was " + intervalMillis);
+        }
+        this.intervalMillis = intervalMillis;
+    }
+
+    public long getInterval() {
+        return intervalMillis;
+    }
+
+    /**
+     * Poll right away and then every interval until stopped, does nothing if already running
+     */
+    public synchronized void start() {
+        if (running || scheduler.isShutdown()) {
+            return;
+        }
+        running = true;
+        generation++;
+        schedule(generation, 0);
+    }
+
+    /**
+     * Stop polling, a request in flight is finished but its samples are not delivered
+     */
+    public synchronized void stop() {
+        running = false;
+        generation++;
+        if (next != null) {
+            next.cancel(false);
+            next = null;
+        }
+    }
+
+    /**
+     * Stop polling for good and end the poller thread
+     */
+    public void shutdown() {
+        stop();
+        scheduler.shutdownNow();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Number of polls, successful or not
+     */
+    public long getPollCount() {
+        return polls;
+    }
+
+    /**
+     * Number of failed polls
+     */
+    public long getFailureCount() {
+        return failures;
+    }
+
+    private void schedule(int generation, long delayMillis) {
+        next = scheduler.schedule(() -> poll(generation), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll(int generation) {
+        //a failure that gets past the catch below still backs off instead of polling at full rate
+        long delayMillis = MAX_BACKOFF_MILLIS;
+        polls++;
+        try {
+            SensorSamples samples = source.fetch();
+            consecutiveFailures = 0;
+            delayMillis = intervalMillis;
+            handler.post(() -> {
+                //the poller might have been stopped while the samples were on their way
+                if (running) {
+                    listener.onSamples(samples);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            //a malformed response or a bug in the source must not end polling, the scheduler would swallow it silently
+            failures++;
+            int failed = ++consecutiveFailures;
+            delayMillis = backoffMillis(failed);
+            Log.w(TAG, "poll failed " + failed + " times in a row, retrying in " + delayMillis + " ms", e);
+            handler.post(() -> {
+                if (running) {
+                    listener.onPollFailed(e, failed);
+                }
+            });
+        } finally {
+            synchronized (this) {
+                if (running && this.generation == generation) {
+                    schedule(generation, delayMillis);
+                }
+            }
+        }
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half of the delay is fixed, the other half random
+     */
+    private long backoffMillis(int failures) {
+        long delay = Math.min(MAX_BACKOFF_MILLIS, MIN_BACKOFF_MILLIS << Math.min(failures - 1, 20));
+        //at most half of MAX_BACKOFF_MILLIS, well within an int
+        return delay / 2 + random.nextInt((int) (delay / 2) + 1);
+    }
+}
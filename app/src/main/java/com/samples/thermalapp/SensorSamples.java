@@ -0,0 +1,114 @@
+package com.samples.thermalapp;
+
+import java.util.Arrays;
+
+/**
+ * Samples of several sensors from one /samples request, stored in flat primitive arrays.
+ * <p>
+ * Every sensor has room for {@code capacity} samples; sample {@code i} of sensor {@code s} is at {@code s * capacity + i}
+ * in the value arrays. Samples are kept in the order of the response, newest first.
+ */
+class SensorSamples {
+
+    private final String[] sensorNames;
+    private final int capacity;
+    private final int[] counts;
+    private final long[] observedMillis;
+    //Fahrenheit, as reported by the sensors
+    private final double[] temperature;
+    //relative humidity in percent
+    private final double[] humidity;
+
+    SensorSamples(String[] sensorNames, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive, was " + capacity);
+        }
+        this.sensorNames = sensorNames.clone();
+        this.capacity = capacity;
+        this.counts = new int[sensorNames.length];
+        this.observedMillis = new long[sensorNames.length * capacity];
+        this.temperature = new double[sensorNames.length * capacity];
+        this.humidity = new double[sensorNames.length * capacity];
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * Append a sample, ignored once the sensor has {@link #getCapacity()} samples
+     */
+    void add(int sensor, long observedMillis, double temperature, double humidity) {
+        int count = counts[sensor];
+        if (count == capacity) {
+            return;
+        }
+        int index = sensor * capacity + count;
+        this.observedMillis[index] = observedMillis;
+        this.temperature[index] = temperature;
+        this.humidity[index] = humidity;
+        counts[sensor] = count + 1;
+    }
+
+    /**
+     * Index of the sensor, -1 if it is not part of these samples
+     */
+    public int indexOf(String sensorName) {
+        for (int i = 0; i < sensorNames.length; i++) {
+            if (sensorNames[i].equals(sensorName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getSensorCount() {
+        return sensorNames.length;
+    }
+
+    public String getSensorName(int sensor) {
+        return sensorNames[sensor];
+    }
+
+    /**
+     * Maximum number of samples per sensor
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Number of samples received for the sensor
+     */
+    public int getCount(int sensor) {
+        return counts[sensor];
+    }
+
+    /**
+     * When the sample was taken, milliseconds since the epoch, 0 if the response had no timestamp
+     */
+    public long getObservedMillis(int sensor, int sample) {
+        return observedMillis[index(sensor, sample)];
+    }
+
+    /**
+     * Temperature in Fahrenheit
+     */
+    public double getTemperature(int sensor, int sample) {
+        return temperature[index(sensor, sample)];
+    }
+
+    /**
+     * Relative humidity in percent
+     */
+    public double getHumidity(int sensor, int sample) {
+        return humidity[index(sensor, sample)];
+    }
+
+    private int index(int sensor, int sample) {
+        if (sample < 0 || sample >= counts[sensor]) {
+            throw new IndexOutOfBoundsException("sample " + sample + " of sensor " + sensorNames[sensor] + ", count " + counts[sensor]);
+        }
+        return sensor * capacity + sample;
+    }
+}
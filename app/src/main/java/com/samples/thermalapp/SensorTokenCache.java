@@ -0,0 +1,71 @@
+package com.samples.thermalapp;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the access token of the sensor backend so it is not re-authenticated before every query.
+ * <p>
+ * The token is reused until it is older than the configured lifetime or a caller reports it as rejected with
+ * {@link #invalidate(String)}. When many threads need a new token at the same time only one of them authenticates,
+ * the others wait for it and get the same token.
+ */
+class SensorTokenCache {
+
+    //the backend does not tell us when a token expires, refresh well within the lifetime of its access tokens
+    static final long DEFAULT_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(25);
+
+    /**
+     * Does the actual authentication round trips, eg {@link SensorClient#authenticate()}
+     */
+    interface TokenSource {
+        String fetchToken() throws IOException;
+    }
+
+    private final TokenSource source;
+    private final long lifetimeNanos;
+
+    //guarded by this
+    private String token = null;
+    private long fetchedAtNanos;
+    private int refreshes = 0;
+
+    SensorTokenCache(TokenSource source) {
+        this(source, DEFAULT_LIFETIME_MILLIS);
+    }
+
+    SensorTokenCache(TokenSource source, long lifetimeMillis) {
+        this.source = source;
+        this.lifetimeNanos = TimeUnit.MILLISECONDS.toNanos(lifetimeMillis);
+    }
+
+    /**
+     * The cached token, authenticates first if there is none or it has expired
+     */
+    public synchronized String get() throws IOException {
+        if (token == null || System.nanoTime() - fetchedAtNanos >= lifetimeNanos) {
+            //callers arriving while we authenticate wait on the lock and then reuse this token
+            token = source.fetchToken();
+            fetchedAtNanos = System.nanoTime();
+            refreshes++;
+        }
+        return token;
+    }
+
+    /**
+     * Drop a token the backend rejected, ignored if the cache has moved on to a newer token already
+     * so a burst of rejected requests only leads to one refresh
+     */
+    public synchronized void invalidate(String rejectedToken) {
+        if (token != null && token.equals(rejectedToken)) {
+            token = null;
+        }
+    }
+
+    /**
+     * Number of times a token was fetched from the backend
+     */
+    public synchronized int getRefreshCount() {
+        return refreshes;
+    }
+}
@@ -0,0 +1,293 @@
+package com.samples.thermalapp;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.util.Log;
+
+import com.samples.thermalapp.detection.AmbientConditions;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Saves what the inspector sees: the annotated thermal image, the visual image if the frame has one and the room conditions.
+ * <p>
+ * The camera thread only copies the bitmaps of a frame into pooled bitmaps and queues them, compressing and writing the
+ * files happens on a single background thread. The queue is bounded: when it is full, the rest of the burst is dropped
+ * instead of making the camera thread wait, see {@link #getDroppedFrames()}.
+ * <p>
+ * Every snapshot is written as {@code snapshot-<time>.png} (or .jpg), {@code snapshot-<time>-visual.png} and
+ * {@code snapshot-<time>.json} with the conditions, scale and risk regions of the frame.
+ */
+class SnapshotExporter {
+
+    private static final String TAG = "SnapshotExporter";
+
+    //frames waiting to be written, a burst of about half a second at 9 fps
+    static final int DEFAULT_QUEUE_SIZE = 4;
+    static final int DEFAULT_JPEG_QUALITY = 90;
+
+    enum Format {
+        //lossless, the dots stay sharp
+        PNG(Bitmap.CompressFormat.PNG, ".png"),
+        JPEG(Bitmap.CompressFormat.JPEG, ".jpg");
+
+        final Bitmap.CompressFormat compressFormat;
+        final String extension;
+
+        Format(Bitmap.CompressFormat compressFormat, String extension) {
+            this.compressFormat = compressFormat;
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * Receives the results, called on the thread of the handler given to the exporter
+     */
+    interface Listener {
+        void onSaved(File thermalImage);
+
+        void onDropped(int frames);
+
+        void onFailed(IOException error);
+    }
+
+    private final File directory;
+    private final Handler handler;
+    private final Listener listener;
+    private final ThreadPoolExecutor executor;
+    //a thermal and a visual bitmap per queued frame and one being written
+    private final BitmapPool bitmaps;
+    private volatile Format format = Format.PNG;
+    private volatile int jpegQuality = DEFAULT_JPEG_QUALITY;
+
+    //frames still to capture of the requested burst
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong saved = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    //only used on the camera thread
+    private final Canvas canvas = new Canvas();
+    //only used on the writer thread
+    private final SimpleDateFormat fileTime = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS", Locale.US);
+
+    SnapshotExporter(File directory, Handler handler, Listener listener) {
+        this(directory, DEFAULT_QUEUE_SIZE, handler, listener);
+    }
+
+    SnapshotExporter(File directory, int queueSize, Handler handler, Listener listener) {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("queueSize must be positive, was " + queueSize);
+        }
+        this.directory = directory;
+        this.handler = handler;
+        this.listener = listener;
+        this.bitmaps = new BitmapPool((queueSize + 1) * 2);
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            //encoding must not compete with the camera thread
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public void setJpegQuality(int jpegQuality) {
+        if (jpegQuality < 0 || jpegQuality > 100) {
+            throw new IllegalArgumentException("jpegQuality must be between 0 and 100, was " + jpegQuality);
+        }
+        this.jpegQuality = jpegQuality;
+    }
+
+    /**
+     * Save the next {@code frames} frames, replaces a burst that is still running
+     */
+    public void request(int frames) {
+        if (frames < 1) {
+            throw new IllegalArgumentException("frames must be positive, was " + frames);
+        }
+        pending.set(frames);
+    }
+
+    /**
+     * Whether the next frame is saved, a plain read for the camera thread
+     */
+    public boolean isPending() {
+        return pending.get() > 0;
+    }
+
+    /**
+     * Queue a frame if one was requested, called on the camera thread after the overlay was drawn.
+     * Only copies the bitmaps, the frame can be handed on right after
+     *
+     * @return false if no frame was requested or it was dropped
+     */
+    public boolean capture(FrameDataHolder frame, AmbientConditions conditions, long timestampMillis) {
+        if (!takePending()) {
+            return false;
+        }
+        if (executor.isShutdown() || executor.getQueue().remainingCapacity() == 0) {
+            dropBurst(1);
+            return false;
+        }
+        Snapshot snapshot = new Snapshot(copy(frame.msxBitmap), frame.hasVisualImage() ? copy(frame.dcBitmap) : null,
+                conditions, timestampMillis, frame.minTemperature, frame.maxTemperature, frame.riskRegions, frame.largestRiskRegion);
+        try {
+            executor.execute(() -> write(snapshot));
+        } catch (RejectedExecutionException e) {
+            bitmaps.release(snapshot.thermalImage);
+            bitmaps.release(snapshot.visualImage);
+            dropBurst(1);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write the queued snapshots and stop the writer thread
+     */
+    public void shutdown() {
+        pending.set(0);
+        executor.shutdown();
+    }
+
+    /**
+     * Number of snapshots written
+     */
+    public long getSavedFrames() {
+        return saved.get();
+    }
+
+    /**
+     * Number of requested frames that were not saved because the writer was behind
+     */
+    public long getDroppedFrames() {
+        return dropped.get();
+    }
+
+    private boolean takePending() {
+        while (true) {
+            int frames = pending.get();
+            if (frames <= 0) {
+                return false;
+            }
+            if (pending.compareAndSet(frames, frames - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Drop the current frame and the rest of its burst, a burst with gaps is not worth the wait
+     */
+    private void dropBurst(int frames) {
+        int total = frames + Math.max(0, pending.getAndSet(0));
+        dropped.addAndGet(total);
+        handler.post(() -> listener.onDropped(total));
+    }
+
+    private Bitmap copy(Bitmap source) {
+        Bitmap copy = bitmaps.acquire(source.getWidth(), source.getHeight(), source.getConfig());
+        canvas.setBitmap(copy);
+        canvas.drawBitmap(source, 0, 0, null);
+        canvas.setBitmap(null);
+        return copy;
+    }
+
+    /**
+     * Compress and write a snapshot, runs on the writer thread
+     */
+    private void write(Snapshot snapshot) {
+        Format format = this.format;
+        String name = "snapshot-" + fileTime.format(new Date(snapshot.timestampMillis));
+        File thermalFile = new File(directory, name + format.extension);
+        try {
+            compress(snapshot.thermalImage, format, thermalFile);
+            if (snapshot.visualImage != null) {
+                compress(snapshot.visualImage, format, new File(directory, name + "-visual" + format.extension));
+            }
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, name + ".json")), StandardCharsets.UTF_8)) {
+                writer.write(snapshot.toJson());
+            }
+            saved.incrementAndGet();
+            handler.post(() -> listener.onSaved(thermalFile));
+        } catch (IOException e) {
+            Log.e(TAG, "could not save " + thermalFile, e);
+            handler.post(() -> listener.onFailed(e));
+        } finally {
+            bitmaps.release(snapshot.thermalImage);
+            bitmaps.release(snapshot.visualImage);
+        }
+    }
+
+    private void compress(Bitmap bitmap, Format format, File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            if (!bitmap.compress(format.compressFormat, jpegQuality, out)) {
+                throw new IOException("could not encode " + file);
+            }
+        }
+    }
+
+    /**
+     * A frame copied off the camera thread
+     */
+    private static final class Snapshot {
+        final Bitmap thermalImage;
+        final Bitmap visualImage;
+        final AmbientConditions conditions;
+        final long timestampMillis;
+        final double minTemperature;
+        final double maxTemperature;
+        final int riskRegions;
+        final double largestRiskRegion;
+
+        Snapshot(Bitmap thermalImage, Bitmap visualImage, AmbientConditions conditions, long timestampMillis,
+                 double minTemperature, double maxTemperature, int riskRegions, double largestRiskRegion) {
+            this.thermalImage = thermalImage;
+            this.visualImage = visualImage;
+            this.conditions = conditions;
+            this.timestampMillis = timestampMillis;
+            this.minTemperature = minTemperature;
+            this.maxTemperature = maxTemperature;
+            this.riskRegions = riskRegions;
+            this.largestRiskRegion = largestRiskRegion;
+        }
+
+        String toJson() {
+            return String.format(Locale.US, "{\"timestamp\": %d, \"temperature\": %.2f, \"humidity\": %.2f, \"dewPoint\": %.3f, "
+                            + "\"conditionsSource\": \"%s\", \"conditionsTimestamp\": %d, \"minTemperature\": %s, \"maxTemperature\": %s, "
+                            + "\"riskRegions\": %d, \"largestRiskRegion\": %.4f}",
+                    timestampMillis, conditions.getTemperature(), conditions.getHumidity(), conditions.getDewPoint(),
+                    conditions.getSource(), conditions.getTimestampMillis(), number(minTemperature), number(maxTemperature),
+                    riskRegions, largestRiskRegion);
+        }
+
+        //the scale is NaN when unknown, which JSON has no number for
+        private static String number(double value) {
+            return Double.isNaN(value) ? "null" : String.format(Locale.US, "%.2f", value);
+        }
+    }
+}
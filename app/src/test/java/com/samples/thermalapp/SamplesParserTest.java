@@ -0,0 +1,177 @@
+package com.samples.thermalapp;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class SamplesParserTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    //2019-09-04T15:42:50Z
+    private static final long OBSERVED = 1567611770000L;
+
+    @Test
+    public void readsEverySensorInResponseOrder() throws IOException {
+        SensorSamples samples = parse(new String[]{"kitchen", "cellar"}, 2, "{\"status\": \"OK\", \"sensors\": {"
+                + "\"cellar\": [{\"observed\": \"2019-09-04T15:42:50.000Z\", \"temperature\": 55.5, \"humidity\": 80.25},"
+                + "             {\"observed\": \"2019-09-04T15:41:50.000Z\", \"temperature\": 55.4, \"humidity\": 80.5}],"
+                + "\"kitchen\": [{\"observed\": \"2019-09-04T15:42:49.500Z\", \"temperature\": 71.2, \"humidity\": 40.1,"
+                + "              \"gateways\": \"home\", \"tags\": [1, {\"a\": null}]}]},"
+                + "\"truncated\": false}");
+
+        assertEquals(1, samples.getCount(0));
+        assertEquals(OBSERVED - 500, samples.getObservedMillis(0, 0));
+        assertEquals(71.2, samples.getTemperature(0, 0), 0);
+        assertEquals(40.1, samples.getHumidity(0, 0), 0);
+
+        assertEquals(2, samples.getCount(1));
+        assertEquals(OBSERVED, samples.getObservedMillis(1, 0));
+        assertEquals(55.5, samples.getTemperature(1, 0), 0);
+        assertEquals(80.25, samples.getHumidity(1, 0), 0);
+        assertEquals(OBSERVED - 60000, samples.getObservedMillis(1, 1));
+        assertEquals(80.5, samples.getHumidity(1, 1), 0);
+    }
+
+    @Test
+    public void skipsUnknownSensorsAndExtraSamples() throws IOException {
+        SensorSamples samples = parse(new String[]{"kitchen"}, 1, "{\"sensors\": {"
+                + "\"garage\": [{\"observed\": \"not a time\", \"temperature\": \"n/a\"}],"
+                + "\"kitchen\": [{\"temperature\": 70}, {\"temperature\": 69}]}}");
+
+        assertEquals(1, samples.getCount(0));
+        assertEquals(70, samples.getTemperature(0, 0), 0);
+    }
+
+    @Test
+    public void missingAndNullFieldsKeepTheirDefaults() throws IOException {
+        SensorSamples samples = parse(new String[]{"kitchen"}, 3, "{\"sensors\": {\"kitchen\": ["
+                + "{\"observed\": \"2019-09-04T15:42:50Z\", \"temperature\": 71.2},"
+                + "{\"humidity\": null, \"temperature\": null, \"observed\": null},"
+                + "{}]}}");
+
+        assertEquals(3, samples.getCount(0));
+        assertEquals(OBSERVED, samples.getObservedMillis(0, 0));
+        assertEquals(71.2, samples.getTemperature(0, 0), 0);
+        assertEquals(Double.NaN, samples.getHumidity(0, 0), 0);
+        for (int sample = 1; sample < 3; sample++) {
+            assertEquals(0, samples.getObservedMillis(0, sample));
+            assertEquals(Double.NaN, samples.getTemperature(0, sample), 0);
+            assertEquals(Double.NaN, samples.getHumidity(0, sample), 0);
+        }
+    }
+
+    @Test
+    public void acceptsNumbersSentAsStrings() throws IOException {
+        SensorSamples samples = parse(new String[]{"kitchen"}, 1,
+                "{\"sensors\": {\"kitchen\": [{\"temperature\": \"71.25\", \"humidity\": \"40\"}]}}");
+
+        assertEquals(71.25, samples.getTemperature(0, 0), 0);
+        assertEquals(40, samples.getHumidity(0, 0), 0);
+    }
+
+    @Test
+    public void noSensorsIsAnEmptyResult() throws IOException {
+        SensorSamples samples = new SensorSamples(new String[]{"kitchen"}, 1);
+        samples.add(0, 1, 2, 3);
+        SamplesParser.parse(stream("{\"sensors\": {}}"), samples);
+
+        assertEquals(0, samples.getCount(0));
+    }
+
+    @Test
+    public void malformedResponsesAreIOExceptions() {
+        String[] responses = {
+                "",
+                "[]",
+                "{\"sensors\": []}",
+                "{\"sensors\": {\"kitchen\": [{\"temperature\": \"warm\"}]}}",
+                "{\"sensors\": {\"kitchen\": [{\"observed\": \"yesterday\"}]}}",
+                "{\"sensors\": {\"kitchen\": [{\"temperature\": 71.2}",
+        };
+        for (String response : responses) {
+            try {
+                parse(new String[]{"kitchen"}, 1, response);
+                fail("accepted " + response);
+            } catch (IOException expected) {
+                //the poller backs off on any IOException
+            }
+        }
+    }
+
+    @Test
+    public void timestampsInUtc() throws IOException {
+        assertEquals(OBSERVED, SamplesParser.parseTimestamp("2019-09-04T15:42:50Z"));
+        assertEquals(OBSERVED, SamplesParser.parseTimestamp("2019-09-04T15:42:50.000Z"));
+        assertEquals(OBSERVED + 5, SamplesParser.parseTimestamp("2019-09-04T15:42:50.005Z"));
+        assertEquals(OBSERVED + 500, SamplesParser.parseTimestamp("2019-09-04T15:42:50.5Z"));
+        //digits past the millisecond are cut off
+        assertEquals(OBSERVED + 123, SamplesParser.parseTimestamp("2019-09-04T15:42:50.123999Z"));
+        assertEquals(0, SamplesParser.parseTimestamp("1970-01-01T00:00:00Z"));
+        assertEquals(-1000, SamplesParser.parseTimestamp("1969-12-31T23:59:59Z"));
+        //without an offset the time is taken as UTC
+        assertEquals(OBSERVED, SamplesParser.parseTimestamp("2019-09-04T15:42:50"));
+    }
+
+    @Test
+    public void timestampsWithOffsets() throws IOException {
+        assertEquals(OBSERVED, SamplesParser.parseTimestamp("2019-09-04T17:42:50+02:00"));
+        assertEquals(OBSERVED, SamplesParser.parseTimestamp("2019-09-04T17:42:50+0200"));
+        assertEquals(OBSERVED, SamplesParser.parseTimestamp("2019-09-04T17:42:50+02"));
+        assertEquals(OBSERVED, SamplesParser.parseTimestamp("2019-09-04T10:12:50-05:30"));
+        assertEquals(OBSERVED, SamplesParser.parseTimestamp("2019-09-04T15:42:50+00:00"));
+        assertEquals(OBSERVED + 250, SamplesParser.parseTimestamp("2019-09-05T01:12:50.250+09:30"));
+    }
+
+    @Test
+    public void timestampsAroundLeapDays() throws IOException {
+        //2020-02-29T12:00:00Z and the days around it
+        long leapDay = 1582977600000L;
+        long day = 24 * 3600 * 1000L;
+        assertEquals(leapDay - day, SamplesParser.parseTimestamp("2020-02-28T12:00:00Z"));
+        assertEquals(leapDay, SamplesParser.parseTimestamp("2020-02-29T12:00:00Z"));
+        assertEquals(leapDay + day, SamplesParser.parseTimestamp("2020-03-01T12:00:00Z"));
+        //the offset moves the time back over the leap day
+        assertEquals(leapDay + day - 13 * 3600 * 1000L, SamplesParser.parseTimestamp("2020-03-01T00:00:00+01:00"));
+        //2000 is a leap year, 1900 and 2100 are not
+        assertEquals(951782400000L, SamplesParser.parseTimestamp("2000-02-29T00:00:00Z"));
+        assertEquals(951868800000L, SamplesParser.parseTimestamp("2000-03-01T00:00:00Z"));
+        assertEquals(-2203891200000L, SamplesParser.parseTimestamp("1900-03-01T00:00:00Z"));
+        assertEquals(-2203977600000L, SamplesParser.parseTimestamp("1900-02-28T00:00:00Z"));
+        assertEquals(4107542400000L, SamplesParser.parseTimestamp("2100-03-01T00:00:00Z"));
+        assertEquals(4107456000000L, SamplesParser.parseTimestamp("2100-02-28T00:00:00Z"));
+    }
+
+    @Test
+    public void invalidTimestampsAreIOExceptions() {
+        String[] values = {"", "2019-09-04", "2019-09-04T15:42", "2019-09-04T15:42:50 UTC", "2019-09-04T15:42:50Zulu",
+                "2019-09-04T15:42:50+2", "2019-09-04T15:42:50+02:0", "2019-09-04T15:42:50*02:00"};
+        for (String value : values) {
+            try {
+                SamplesParser.parseTimestamp(value);
+                fail("accepted " + value);
+            } catch (IOException expected) {
+                //reported as a malformed response
+            }
+        }
+    }
+
+    private static SensorSamples parse(String[] sensors, int capacity, String response) throws IOException {
+        SensorSamples samples = new SensorSamples(sensors, capacity);
+        SamplesParser.parse(stream(response), samples);
+        return samples;
+    }
+
+    private static ByteArrayInputStream stream(String response) {
+        return new ByteArrayInputStream(response.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,242 @@
+package com.samples.thermalapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the client against a local stand-in of the sensor backend that counts the round trips per endpoint
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class SensorClientTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final AtomicInteger authorizeCalls = new AtomicInteger();
+    private final AtomicInteger accessTokenCalls = new AtomicInteger();
+    private final AtomicInteger samplesCalls = new AtomicInteger();
+    //access tokens the samples endpoint answers with rejectCode
+    private final Set<String> rejectedTokens = ConcurrentHashMap.newKeySet();
+    private volatile int rejectCode = 401;
+    private volatile long authorizeDelayMillis = 0;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private SensorClient client;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/oauth/authorize", exchange -> {
+            int call = authorizeCalls.incrementAndGet();
+            sleep(authorizeDelayMillis);
+            respond(exchange, 200, "{\"authorization\": \"auth-" + call + "\"}");
+        });
+        server.createContext("/oauth/accesstoken", exchange -> {
+            String body = read(exchange.getRequestBody());
+            int call = accessTokenCalls.incrementAndGet();
+            if (!body.contains("\"auth-" + call + "\"")) {
+                respond(exchange, 400, "{\"message\": \"unknown authorization\"}");
+                return;
+            }
+            respond(exchange, 200, "{\"accesstoken\": \"token-" + call + "\", \"expires\": 1800}");
+        });
+        server.createContext("/samples", exchange -> {
+            read(exchange.getRequestBody());
+            samplesCalls.incrementAndGet();
+            String token = exchange.getRequestHeaders().getFirst("Authorization");
+            if (token == null || rejectedTokens.contains(token)) {
+                respond(exchange, rejectCode, "{\"message\": \"access denied\"}");
+                return;
+            }
+            respond(exchange, 200, "{\"sensors\": {\"" + passwords.SENSORNAME1 + "\": "
+                    + "[{\"observed\": \"2019-09-04T15:42:50.000Z\", \"temperature\": 71.2, \"humidity\": 40.1}]}}");
+        });
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+        client = new SensorClient("http://127.0.0.1:" + server.getAddress().getPort(), "user@example.com", "secret", 2000, 2000);
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    public void authenticatesInTwoRoundTrips() throws IOException {
+        assertEquals("token-1", client.authenticate());
+        assertEquals(1, authorizeCalls.get());
+        assertEquals(1, accessTokenCalls.get());
+    }
+
+    @Test
+    public void reusesTheTokenAcrossPolls() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            SensorSamples samples = client.fetchSamples(1);
+            assertEquals(71.2, samples.getTemperature(0, 0), 0);
+        }
+        assertEquals(5, samplesCalls.get());
+        assertEquals(1, authorizeCalls.get());
+        assertEquals(1, accessTokenCalls.get());
+        assertEquals(1, client.getTokenCache().getRefreshCount());
+    }
+
+    @Test
+    public void concurrentCallersShareOneRefresh() throws Exception {
+        //keeps the first caller inside the refresh while the others arrive
+        authorizeDelayMillis = 200;
+        List<Future<SensorSamples>> results = runConcurrently(8, () -> client.fetchSamples(1));
+        for (Future<SensorSamples> result : results) {
+            assertEquals(1, result.get().getCount(0));
+        }
+        assertEquals(1, authorizeCalls.get());
+        assertEquals(1, accessTokenCalls.get());
+        assertEquals(8, samplesCalls.get());
+    }
+
+    @Test
+    public void expiredTokenIsRefreshed() throws Exception {
+        SensorTokenCache cache = new SensorTokenCache(client::authenticate, 300);
+        assertEquals("token-1", cache.get());
+        assertEquals("token-1", cache.get());
+        assertEquals(1, authorizeCalls.get());
+
+        Thread.sleep(400);
+        assertEquals("token-2", cache.get());
+        assertEquals(2, authorizeCalls.get());
+        assertEquals(2, accessTokenCalls.get());
+    }
+
+    @Test
+    public void unauthorizedTokenIsRefreshedAndRetriedOnce() throws IOException {
+        client.getTokenCache().get();
+        rejectedTokens.add("token-1");
+
+        SensorSamples samples = client.fetchSamples(1);
+        assertEquals(1, samples.getCount(0));
+        //the rejected query and its retry with the new token
+        assertEquals(2, samplesCalls.get());
+        assertEquals(2, authorizeCalls.get());
+        assertEquals(2, accessTokenCalls.get());
+    }
+
+    @Test
+    public void forbiddenTokenIsRefreshedAndRetriedOnce() throws IOException {
+        rejectCode = 403;
+        client.getTokenCache().get();
+        rejectedTokens.add("token-1");
+
+        client.fetchSamples(1);
+        assertEquals(2, samplesCalls.get());
+        assertEquals(2, accessTokenCalls.get());
+    }
+
+    @Test
+    public void secondRejectionIsNotRetried() throws IOException {
+        client.getTokenCache().get();
+        rejectedTokens.add("token-1");
+        rejectedTokens.add("token-2");
+
+        try {
+            client.fetchSamples(1);
+            fail("a rejected retry must surface");
+        } catch (SensorAuthException e) {
+            assertEquals(401, e.getResponseCode());
+        }
+        assertEquals(2, samplesCalls.get());
+        assertEquals(2, accessTokenCalls.get());
+    }
+
+    @Test
+    public void concurrentRejectionsShareOneRefresh() throws Exception {
+        client.getTokenCache().get();
+        rejectedTokens.add("token-1");
+
+        List<Future<SensorSamples>> results = runConcurrently(8, () -> client.fetchSamples(1));
+        for (Future<SensorSamples> result : results) {
+            assertEquals(1, result.get().getCount(0));
+        }
+        //callers that were rejected after the refresh only drop their own stale token
+        assertEquals(2, accessTokenCalls.get());
+        assertTrue(samplesCalls.get() <= 16);
+    }
+
+    private interface Call<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Start {@code threads} callers at the same moment
+     */
+    private static <T> List<Future<T>> runConcurrently(int threads, Call<T> call) throws InterruptedException {
+        ExecutorService callers = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(callers.submit(() -> {
+                start.await();
+                return call.call();
+            }));
+        }
+        start.countDown();
+        callers.shutdown();
+        assertTrue(callers.awaitTermination(10, TimeUnit.SECONDS));
+        return results;
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        StringBuilder text = new StringBuilder();
+        byte[] buffer = new byte[512];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            text.append(new String(buffer, 0, read, UTF_8));
+        }
+        return text.toString();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
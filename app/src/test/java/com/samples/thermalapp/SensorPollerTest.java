@@ -0,0 +1,374 @@
+package com.samples.thermalapp;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Runs the polls by hand on a scheduler that only records what was scheduled
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class SensorPollerTest {
+
+    private static final long INTERVAL = 30_000;
+
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private final FixedRandom random = new FixedRandom();
+    private final List<SensorSamples> delivered = new ArrayList<>();
+    private final List<Integer> failures = new ArrayList<>();
+    //what the next polls return, a failure while it is set
+    private IOException failure;
+    private RuntimeException bug;
+    private SensorSamples samples;
+    private SensorPoller poller;
+
+    @Before
+    public void createPoller() {
+        samples = new SensorSamples(new String[]{"kitchen"}, 1);
+        poller = new SensorPoller(() -> {
+            if (failure != null) {
+                throw failure;
+            }
+            if (bug != null) {
+                throw bug;
+            }
+            return samples;
+        }, new Handler(Looper.getMainLooper()), new SensorPoller.Listener() {
+            @Override
+            public void onSamples(SensorSamples samples) {
+                delivered.add(samples);
+            }
+
+            @Override
+            public void onPollFailed(Exception e, int consecutiveFailures) {
+                failures.add(consecutiveFailures);
+            }
+        }, scheduler, random);
+        poller.setInterval(INTERVAL);
+    }
+
+    @Test
+    public void pollsRightAwayAndThenEveryInterval() {
+        poller.start();
+        assertEquals(0, scheduler.pendingDelay());
+
+        for (int i = 1; i <= 3; i++) {
+            scheduler.runNext();
+            assertEquals(INTERVAL, scheduler.pendingDelay());
+        }
+        idleMainLooper();
+        assertEquals(3, delivered.size());
+        assertSame(samples, delivered.get(0));
+        assertEquals(3, poller.getPollCount());
+    }
+
+    @Test
+    public void backoffDoublesUpToTheCap() {
+        failure = new IOException("offline");
+        random.next = FixedRandom.HIGHEST;
+        poller.start();
+        long expected = SensorPoller.MIN_BACKOFF_MILLIS;
+        for (int failed = 1; failed <= 12; failed++) {
+            scheduler.runNext();
+            assertEquals(expected, scheduler.pendingDelay());
+            expected = Math.min(expected * 2, SensorPoller.MAX_BACKOFF_MILLIS);
+        }
+        assertEquals(SensorPoller.MAX_BACKOFF_MILLIS, scheduler.pendingDelay());
+
+        idleMainLooper();
+        assertEquals(12, failures.size());
+        assertEquals(Integer.valueOf(12), failures.get(11));
+        assertEquals(12, poller.getFailureCount());
+    }
+
+    @Test
+    public void jitterTakesAtMostHalfTheDelay() {
+        failure = new IOException("offline");
+        poller.start();
+        long delay = SensorPoller.MIN_BACKOFF_MILLIS;
+        for (int failed = 1; failed <= 10; failed++) {
+            random.next = FixedRandom.LOWEST;
+            scheduler.runNext();
+            assertEquals(delay / 2, scheduler.pendingDelay());
+            assertEquals(delay / 2 + 1, random.lastBound);
+            delay = Math.min(delay * 2, SensorPoller.MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    @Test
+    public void successResetsTheBackoff() {
+        random.next = FixedRandom.HIGHEST;
+        failure = new IOException("offline");
+        poller.start();
+        for (int i = 0; i < 4; i++) {
+            scheduler.runNext();
+        }
+        assertEquals(SensorPoller.MIN_BACKOFF_MILLIS * 8, scheduler.pendingDelay());
+
+        failure = null;
+        scheduler.runNext();
+        assertEquals(INTERVAL, scheduler.pendingDelay());
+
+        failure = new IOException("offline again");
+        scheduler.runNext();
+        assertEquals(SensorPoller.MIN_BACKOFF_MILLIS, scheduler.pendingDelay());
+        idleMainLooper();
+        assertEquals(Integer.valueOf(1), failures.get(failures.size() - 1));
+    }
+
+    @Test
+    public void runtimeExceptionsBackOffToo() {
+        random.next = FixedRandom.HIGHEST;
+        bug = new IllegalStateException("bug in the source");
+        poller.start();
+        scheduler.runNext();
+
+        assertEquals(SensorPoller.MIN_BACKOFF_MILLIS, scheduler.pendingDelay());
+        assertEquals(1, poller.getFailureCount());
+    }
+
+    @Test
+    public void stopCancelsTheNextPoll() {
+        poller.start();
+        scheduler.runNext();
+        poller.stop();
+
+        assertNull(scheduler.next());
+        assertFalse(poller.isRunning());
+    }
+
+    @Test
+    public void samplesOfAStoppedPollerAreNotDelivered() {
+        poller.start();
+        scheduler.runNext();
+        poller.stop();
+        idleMainLooper();
+
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    public void restartDoesNotDoubleSchedule() {
+        poller.start();
+        //the poll of the first start is already running when the poller is stopped and started again
+        Scheduled inFlight = scheduler.next();
+        poller.stop();
+        poller.start();
+        inFlight.task.run();
+
+        //only the new start's poll is left, the old one did not schedule a follow-up
+        assertEquals(1, scheduler.pendingCount());
+        assertEquals(0, scheduler.pendingDelay());
+        scheduler.runNext();
+        assertEquals(1, scheduler.pendingCount());
+        assertEquals(INTERVAL, scheduler.pendingDelay());
+    }
+
+    @Test
+    public void startTwiceSchedulesOnce() {
+        poller.start();
+        poller.start();
+
+        assertEquals(1, scheduler.pendingCount());
+    }
+
+    @Test
+    public void shutdownEndsTheScheduler() {
+        poller.start();
+        poller.shutdown();
+        poller.start();
+
+        assertTrue(scheduler.isShutdown());
+        assertEquals(0, scheduler.pendingCount());
+    }
+
+    private static void idleMainLooper() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    /**
+     * Returns the lowest or highest value of every bound it is asked for
+     */
+    @SuppressWarnings("serial")
+    private static final class FixedRandom extends Random {
+        static final int LOWEST = 0;
+        static final int HIGHEST = 1;
+
+        int next = HIGHEST;
+        int lastBound;
+
+        @Override
+        public int nextInt(int bound) {
+            lastBound = bound;
+            return next == LOWEST ? 0 : bound - 1;
+        }
+    }
+
+    private static final class Scheduled implements ScheduledFuture<Object> {
+        final Runnable task;
+        final long delayMillis;
+        boolean cancelled;
+        boolean done;
+
+        Scheduled(Runnable task, long delayMillis) {
+            this.task = task;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(delayMillis, other.getDelay(TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            cancelled = !done;
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done || cancelled;
+        }
+
+        @Override
+        public Object get() {
+            return null;
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) {
+            return null;
+        }
+    }
+
+    /**
+     * Keeps the scheduled tasks until the test runs them, one at a time like the poller's own thread
+     */
+    private static final class ManualScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+        private final List<Scheduled> scheduled = new ArrayList<>();
+        private boolean shutdown;
+
+        /**
+         * The next task that is neither cancelled nor done, null if there is none
+         */
+        Scheduled next() {
+            for (Scheduled task : scheduled) {
+                if (!task.isDone()) {
+                    return task;
+                }
+            }
+            return null;
+        }
+
+        int pendingCount() {
+            int count = 0;
+            for (Scheduled task : scheduled) {
+                count += task.isDone() ? 0 : 1;
+            }
+            return count;
+        }
+
+        long pendingDelay() {
+            assertEquals(1, pendingCount());
+            return next().delayMillis;
+        }
+
+        void runNext() {
+            Scheduled task = next();
+            task.done = true;
+            task.task.run();
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            Scheduled task = new Scheduled(command, unit.toMillis(delay));
+            scheduled.add(task);
+            return task;
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+            for (Scheduled task : scheduled) {
+                task.cancel(false);
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown();
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return shutdown;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.samples.thermalapp.benchmark;
+
+import com.samples.thermalapp.recording.ThermalCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Compressing frames for a recording, a key frame and a delta to the next frame of a still scene with fresh sensor noise
+ */
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    private short[] next;
+    private short[] decoded;
+    private byte[] out;
+    private int keySize;
+    private int deltaSize;
+    private byte[] key;
+    private byte[] delta;
+
+    @Setup(Level.Trial)
+    public void encode(SyntheticFrame frame) {
+        int pixels = frame.width * frame.height;
+        next = new short[pixels];
+        Random random = new Random(7);
+        for (int i = 0; i < pixels; i++) {
+            //about 0.1 K of noise in centikelvin
+            next[i] = (short) (frame.raw[i] + (int) Math.round(random.nextGaussian() * 10));
+        }
+        decoded = new short[pixels];
+        out = new byte[ThermalCodec.maxEncodedSize(pixels)];
+        key = new byte[out.length];
+        delta = new byte[out.length];
+        keySize = ThermalCodec.encodeKey(frame.raw, frame.width, frame.height, key, 0);
+        deltaSize = ThermalCodec.encodeDelta(next, frame.raw, pixels, delta, 0);
+    }
+
+    @Benchmark
+    public int encodeKey(SyntheticFrame frame) {
+        return ThermalCodec.encodeKey(frame.raw, frame.width, frame.height, out, 0);
+    }
+
+    @Benchmark
+    public int encodeDelta(SyntheticFrame frame) {
+        return ThermalCodec.encodeDelta(next, frame.raw, frame.width * frame.height, out, 0);
+    }
+
+    @Benchmark
+    public short[] decodeKey(SyntheticFrame frame) {
+        ThermalCodec.decodeKey(key, 0, keySize, decoded, frame.width, frame.height);
+        return decoded;
+    }
+
+    @Benchmark
+    public short[] decodeKeyAndDelta(SyntheticFrame frame) {
+        ThermalCodec.decodeKey(key, 0, keySize, decoded, frame.width, frame.height);
+        ThermalCodec.decodeDelta(delta, 0, deltaSize, decoded, frame.width * frame.height);
+        return decoded;
+    }
+}
@@ -0,0 +1,39 @@
+package com.samples.thermalapp.benchmark;
+
+import com.samples.thermalapp.detection.CondensationDetector;
+import com.samples.thermalapp.detection.OverlayRenderer;
+import com.samples.thermalapp.detection.PaletteMapper;
+import com.samples.thermalapp.detection.ScaleRange;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * All plain Java steps of one frame in the order handleIncomingImage runs them
+ */
+@State(Scope.Thread)
+public class FrameBenchmark {
+
+    private final ScaleRange range = new ScaleRange();
+    private final PaletteMapper palette = PaletteMapper.iron();
+    private final CondensationDetector detector = new CondensationDetector();
+    private final OverlayRenderer overlay = new OverlayRenderer();
+    private int[] pixels;
+
+    @Setup(Level.Trial)
+    public void prepare(SyntheticFrame frame) {
+        pixels = new int[frame.width * frame.height];
+    }
+
+    @Benchmark
+    public int frame(SyntheticFrame frame) {
+        int size = frame.width * frame.height;
+        range.compute(frame.temperatures, size);
+        palette.map(frame.temperatures, size, range.getMin(), range.getMax(), pixels);
+        detector.detect(frame.temperatures, frame.width, frame.height, SyntheticFrame.DEW_POINT);
+        return overlay.render(pixels, frame.width, detector.getMask(), frame.width, frame.width, frame.height);
+    }
+}
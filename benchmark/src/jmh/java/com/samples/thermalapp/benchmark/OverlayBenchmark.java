@@ -0,0 +1,39 @@
+package com.samples.thermalapp.benchmark;
+
+import com.samples.thermalapp.detection.CondensationDetector;
+import com.samples.thermalapp.detection.OverlayRenderer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Drawing the condensation dots into the pixel buffer, without the Bitmap getPixels/setPixels copy
+ */
+@State(Scope.Thread)
+public class OverlayBenchmark {
+
+    private final CondensationDetector detector = new CondensationDetector();
+    private final OverlayRenderer sampled = new OverlayRenderer();
+    //every pixel at risk is drawn, the worst case for the renderer
+    private final OverlayRenderer dense = new OverlayRenderer(1, 1, OverlayRenderer.DEFAULT_COLOR);
+    private int[] pixels;
+
+    @Setup(Level.Trial)
+    public void classify(SyntheticFrame frame) {
+        detector.detect(frame.temperatures, frame.width, frame.height, SyntheticFrame.DEW_POINT);
+        pixels = new int[frame.width * frame.height];
+    }
+
+    @Benchmark
+    public int sampled(SyntheticFrame frame) {
+        return sampled.render(pixels, frame.width, detector.getMask(), frame.width, frame.width, frame.height);
+    }
+
+    @Benchmark
+    public int dense(SyntheticFrame frame) {
+        return dense.render(pixels, frame.width, detector.getMask(), frame.width, frame.width, frame.height);
+    }
+}
@@ -0,0 +1,33 @@
+package com.samples.thermalapp.benchmark;
+
+import com.samples.thermalapp.detection.PaletteMapper;
+import com.samples.thermalapp.detection.ScaleRange;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Mapping the temperatures of a frame to palette colours
+ */
+@State(Scope.Thread)
+public class PaletteBenchmark {
+
+    private final PaletteMapper palette = PaletteMapper.iron();
+    private final ScaleRange range = new ScaleRange();
+    private int[] pixels;
+
+    @Setup(Level.Trial)
+    public void prepare(SyntheticFrame frame) {
+        range.compute(frame.temperatures, frame.width * frame.height);
+        pixels = new int[frame.width * frame.height];
+    }
+
+    @Benchmark
+    public int[] iron(SyntheticFrame frame) {
+        palette.map(frame.temperatures, frame.width * frame.height, range.getMin(), range.getMax(), pixels);
+        return pixels;
+    }
+}
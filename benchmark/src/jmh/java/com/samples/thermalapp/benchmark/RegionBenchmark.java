@@ -0,0 +1,31 @@
+package com.samples.thermalapp.benchmark;
+
+import com.samples.thermalapp.detection.CondensationDetector;
+import com.samples.thermalapp.detection.RegionLabeler;
+import com.samples.thermalapp.detection.RiskRegions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Connected region labelling of the risk mask, the step after the threshold in handleIncomingImage
+ */
+@State(Scope.Thread)
+public class RegionBenchmark {
+
+    private final CondensationDetector detector = new CondensationDetector();
+    private final RegionLabeler labeler = new RegionLabeler();
+
+    @Setup(Level.Trial)
+    public void classify(SyntheticFrame frame) {
+        detector.detect(frame.raw, frame.width, frame.height, frame.rawDewPoint);
+    }
+
+    @Benchmark
+    public RiskRegions label(SyntheticFrame frame) {
+        return labeler.label(detector.getMask(), frame.raw, frame.width, frame.height);
+    }
+}
@@ -0,0 +1,75 @@
+package com.samples.thermalapp.benchmark;
+
+import com.samples.thermalapp.detection.AmbientConditions;
+import com.samples.thermalapp.detection.CondensationDetector;
+import com.samples.thermalapp.detection.DetectionStats;
+import com.samples.thermalapp.detection.OverlayRenderer;
+import com.samples.thermalapp.detection.PaletteMapper;
+import com.samples.thermalapp.detection.RadiometricScale;
+import com.samples.thermalapp.detection.RegionLabeler;
+import com.samples.thermalapp.recording.RawRecorder;
+import com.samples.thermalapp.recording.RecordedFrame;
+import com.samples.thermalapp.recording.RecordingReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The replay path of CameraHandler: read a recorded frame, classify it, label the regions, colour it and draw the dots
+ */
+@State(Scope.Thread)
+public class ReplayBenchmark {
+
+    private static final int FRAMES = 60;
+
+    private final CondensationDetector detector = new CondensationDetector();
+    private final RegionLabeler labeler = new RegionLabeler();
+    private final PaletteMapper palette = PaletteMapper.iron();
+    private final OverlayRenderer overlay = new OverlayRenderer();
+    private final RecordedFrame recorded = new RecordedFrame();
+    private File file;
+    private RecordingReader reader;
+    private int[] pixels;
+
+    @Setup(Level.Trial)
+    public void record(SyntheticFrame frame) throws IOException {
+        file = File.createTempFile("replay", ".trec");
+        AmbientConditions conditions = new AmbientConditions(20, 60, 0, AmbientConditions.Source.MANUAL);
+        try (RawRecorder recorder = new RawRecorder(file)) {
+            for (int i = 0; i < FRAMES; i++) {
+                recorder.append(i * 111L, frame.raw, frame.width, frame.height, RadiometricScale.CENTIKELVIN, conditions);
+            }
+        }
+        reader = new RecordingReader(file);
+        pixels = new int[frame.width * frame.height];
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        reader.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public int frame() throws IOException {
+        if (!reader.next(recorded)) {
+            reader.rewind();
+            reader.next(recorded);
+        }
+        int width = recorded.getWidth();
+        int height = recorded.getHeight();
+        short[] raw = recorded.getRaw();
+        int threshold = recorded.getScale().toRawThreshold(recorded.getConditions().getDewPointKelvin());
+        DetectionStats stats = detector.detect(raw, width, height, threshold);
+        labeler.label(detector.getMask(), raw, width, height);
+        palette.map(raw, width * height, (int) stats.getMin(), (int) stats.getMax(), pixels);
+        return overlay.render(pixels, width, detector.getMask(), width, width, height);
+    }
+}
@@ -0,0 +1,34 @@
+package com.samples.thermalapp.benchmark;
+
+import com.samples.thermalapp.detection.ScaleRange;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Extracting the min/max scale of a frame and truncating it for the labels next to the palette
+ */
+@State(Scope.Thread)
+public class ScaleBenchmark {
+
+    private final ScaleRange range = new ScaleRange();
+
+    @Benchmark
+    public void minMax(SyntheticFrame frame, Blackhole blackhole) {
+        range.compute(frame.temperatures, frame.width * frame.height);
+        blackhole.consume(ScaleRange.truncateForDisplay(range.getMin() - 273.15));
+        blackhole.consume(ScaleRange.truncateForDisplay(range.getMax() - 273.15));
+    }
+
+    /**
+     * The String round trip handleIncomingImage used before, kept as a baseline for the allocation rate
+     */
+    @Benchmark
+    public void minMaxThroughString(SyntheticFrame frame, Blackhole blackhole) {
+        range.compute(frame.temperatures, frame.width * frame.height);
+        blackhole.consume(Double.parseDouble(String.valueOf(range.getMin() - 273.15).substring(0, 4)));
+        blackhole.consume(Double.parseDouble(String.valueOf(range.getMax() - 273.15).substring(0, 4)));
+    }
+}
@@ -0,0 +1,63 @@
+package com.samples.thermalapp.benchmark;
+
+import com.samples.thermalapp.detection.RadiometricScale;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * A generated thermal frame: a warm wall with a vertical gradient, sensor noise and a cold patch below the dew point
+ */
+@State(Scope.Thread)
+public class SyntheticFrame {
+
+    //Kelvin, a room at 20C and 60% humidity
+    static final float DEW_POINT = 285.3f;
+
+    //FLIR ONE resolutions and the larger radiometric cameras
+    @Param({"80x60", "160x120", "320x240", "464x348", "640x480"})
+    public String resolution;
+
+    public int width;
+    public int height;
+    public float[] temperatures;
+    //the frame as the SDK returns it from getValues
+    public double[] values;
+    //the same frame in centikelvin, the way raw 16 bit frames are handled
+    public short[] raw;
+    public int rawDewPoint;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        int separator = resolution.indexOf('x');
+        width = Integer.parseInt(resolution.substring(0, separator));
+        height = Integer.parseInt(resolution.substring(separator + 1));
+        temperatures = new float[width * height];
+        raw = new short[width * height];
+        values = new double[width * height];
+        rawDewPoint = RadiometricScale.CENTIKELVIN.toRawThreshold(DEW_POINT);
+
+        Random random = new Random(42);
+        int patchX = width / 4;
+        int patchY = height / 2;
+        int patchRadius = Math.min(width, height) / 5;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float value = 291.15f + 2f * y / height + (float) random.nextGaussian() * 0.1f;
+                int dx = x - patchX;
+                int dy = y - patchY;
+                if (dx * dx + dy * dy < patchRadius * patchRadius) {
+                    value -= 7f;
+                }
+                temperatures[y * width + x] = value;
+                values[y * width + x] = value;
+                raw[y * width + x] = (short) RadiometricScale.CENTIKELVIN.toRaw(value);
+            }
+        }
+    }
+}
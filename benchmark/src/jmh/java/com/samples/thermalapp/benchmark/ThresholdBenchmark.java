@@ -0,0 +1,106 @@
+package com.samples.thermalapp.benchmark;
+
+import com.samples.thermalapp.detection.CondensationDetector;
+import com.samples.thermalapp.detection.DetectionStats;
+import com.samples.thermalapp.detection.IncrementalDetector;
+import com.samples.thermalapp.detection.RadiometricScale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Dew point thresholding of a whole frame, the detector step of handleIncomingImage
+ */
+@State(Scope.Thread)
+public class ThresholdBenchmark {
+
+    private final CondensationDetector detector = new CondensationDetector();
+    private final CondensationDetector tiledDetector = new CondensationDetector();
+    private final IncrementalDetector incrementalDetector = new IncrementalDetector();
+    //the strides the adaptive mode steps through between every pixel and the original overlay density
+    private final CondensationDetector sampledDetector2 = new CondensationDetector();
+    private final CondensationDetector sampledDetector9 = new CondensationDetector();
+    private ForkJoinPool pool;
+    private float[] floatBuffer;
+    private short[] rawBuffer;
+
+    @Setup(Level.Trial)
+    public void startPool() {
+        pool = new ForkJoinPool(Math.min(4, Runtime.getRuntime().availableProcessors()));
+        //split every frame size so the overhead on small frames shows up as well
+        tiledDetector.setParallelism(pool, 1);
+        sampledDetector2.setSampleStride(2);
+        sampledDetector9.setSampleStride(9);
+    }
+
+    @Setup(Level.Trial)
+    public void allocateBuffers(SyntheticFrame frame) {
+        floatBuffer = new float[frame.width * frame.height];
+        rawBuffer = new short[frame.width * frame.height];
+    }
+
+    @TearDown(Level.Trial)
+    public void stopPool() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public DetectionStats temperatures(SyntheticFrame frame) {
+        return detector.detect(frame.temperatures, frame.width, frame.height, SyntheticFrame.DEW_POINT);
+    }
+
+    @Benchmark
+    public DetectionStats temperaturesTiled(SyntheticFrame frame) {
+        return tiledDetector.detect(frame.temperatures, frame.width, frame.height, SyntheticFrame.DEW_POINT);
+    }
+
+    @Benchmark
+    public DetectionStats raw(SyntheticFrame frame) {
+        return detector.detect(frame.raw, frame.width, frame.height, frame.rawDewPoint);
+    }
+
+    @Benchmark
+    public DetectionStats rawSampled2(SyntheticFrame frame) {
+        return sampledDetector2.detect(frame.raw, frame.width, frame.height, frame.rawDewPoint);
+    }
+
+    @Benchmark
+    public DetectionStats rawSampled9(SyntheticFrame frame) {
+        return sampledDetector9.detect(frame.raw, frame.width, frame.height, frame.rawDewPoint);
+    }
+
+    /**
+     * A camera held still: the same frame again, every tile is compared but none is classified
+     */
+    @Benchmark
+    public DetectionStats rawIncrementalStatic(SyntheticFrame frame) {
+        return incrementalDetector.detect(frame.raw, frame.width, frame.height, frame.rawDewPoint);
+    }
+
+    /**
+     * The float mode of CameraHandler, starting from the SDK's double values
+     */
+    @Benchmark
+    public DetectionStats valuesAsFloat(SyntheticFrame frame) {
+        float[] temperatures = floatBuffer;
+        for (int i = 0; i < temperatures.length; i++) {
+            temperatures[i] = (float) frame.values[i];
+        }
+        return detector.detect(temperatures, frame.width, frame.height, SyntheticFrame.DEW_POINT);
+    }
+
+    /**
+     * The raw mode of CameraHandler, starting from the SDK's double values
+     */
+    @Benchmark
+    public DetectionStats valuesAsRaw(SyntheticFrame frame) {
+        RadiometricScale.CENTIKELVIN.toRaw(frame.values, rawBuffer, rawBuffer.length);
+        return detector.detect(rawBuffer, frame.width, frame.height, frame.rawDewPoint);
+    }
+}
@@ -0,0 +1,131 @@
+package com.samples.thermalapp.detection;
+
+/**
+ * Picks the sampling stride of the next frame so that detection stays within a time budget per frame.
+ * <p>
+ * The caller times the stride dependent work of every frame, eg classification and region labelling, and
+ * passes it to {@link #record(long)}. When the moving average is over the budget the stride gets coarser right away.
+ * When it stays below half the budget the next finer stride is tried after a while, and if that does not fit either,
+ * the next try waits twice as long, so a device settles on the finest stride it can afford instead of switching back and forth.
+ * <p>
+ * {@link #record(long)} is meant to be called from one thread, the stride and density can be read from any thread.
+ */
+public class AdaptiveSampling {
+
+    public static final long DEFAULT_BUDGET_NANOS = 8_000_000L;
+    //every pixel up to the density of the fixed overlay and coarser for very slow devices
+    static final int[] STRIDES = {1, 2, 3, 4, 6, 9, 12, 18};
+    //the fixed stride the app used before, so a new stream starts where it always did
+    public static final int INITIAL_STRIDE = OverlayRenderer.DEFAULT_STRIDE;
+
+    //weight of the newest frame in the moving average
+    private static final double SMOOTHING = 0.25;
+    //a finer stride is only tried below this share of the budget
+    private static final double HEADROOM = 0.5;
+    //frames to measure before the stride changes, so a single slow frame does not count
+    static final int MIN_FRAMES = 4;
+    static final int MIN_HOLD_FRAMES = 16;
+    static final int MAX_HOLD_FRAMES = 1024;
+
+    private volatile long budgetNanos;
+    private volatile int level;
+    private double averageNanos = Double.NaN;
+    private int framesAtLevel = 0;
+    private int holdFrames = MIN_HOLD_FRAMES;
+    private boolean lastChangeFiner = false;
+
+    public AdaptiveSampling() {
+        this(DEFAULT_BUDGET_NANOS);
+    }
+
+    public AdaptiveSampling(long budgetNanos) {
+        setBudget(budgetNanos);
+        level = levelOf(INITIAL_STRIDE);
+    }
+
+    /**
+     * Time the stride dependent work of a frame may take, the stride adapts over the next frames
+     */
+    public void setBudget(long budgetNanos) {
+        if (budgetNanos <= 0) {
+            throw new IllegalArgumentException("budget must be positive, was " + budgetNanos);
+        }
+        this.budgetNanos = budgetNanos;
+        holdFrames = MIN_HOLD_FRAMES;
+    }
+
+    public long getBudget() {
+        return budgetNanos;
+    }
+
+    /**
+     * Record the time the stride dependent work of a frame took
+     *
+     * @return the stride for the next frame
+     */
+    public int record(long nanos) {
+        averageNanos = Double.isNaN(averageNanos) ? nanos : averageNanos + SMOOTHING * (nanos - averageNanos);
+        framesAtLevel++;
+        if (framesAtLevel < MIN_FRAMES) {
+            return getStride();
+        }
+        long budget = budgetNanos;
+        if (averageNanos > budget && level < STRIDES.length - 1) {
+            if (lastChangeFiner && framesAtLevel < holdFrames) {
+                //the finer stride did not fit, wait longer before the next try
+                holdFrames = Math.min(holdFrames * 2, MAX_HOLD_FRAMES);
+            }
+            change(level + 1, false);
+        } else if (level > 0 && framesAtLevel >= holdFrames && averageNanos < budget * HEADROOM) {
+            change(level - 1, true);
+        }
+        return getStride();
+    }
+
+    /**
+     * Sampling stride for the next frame, 1 is every pixel
+     */
+    public int getStride() {
+        return STRIDES[level];
+    }
+
+    /**
+     * Share of the pixels classified at the current stride
+     */
+    public double getDensity() {
+        int stride = getStride();
+        return 1.0 / (stride * stride);
+    }
+
+    /**
+     * Moving average of the recorded times at the current stride, NaN right after a change
+     */
+    public double getAverageNanos() {
+        return averageNanos;
+    }
+
+    /**
+     * Start again from {@link #INITIAL_STRIDE}, eg for a new stream
+     */
+    public void reset() {
+        change(levelOf(INITIAL_STRIDE), false);
+        holdFrames = MIN_HOLD_FRAMES;
+    }
+
+    private void change(int level, boolean finer) {
+        this.level = level;
+        lastChangeFiner = finer;
+        framesAtLevel = 0;
+        //the old average says nothing about the new stride
+        averageNanos = Double.NaN;
+    }
+
+    private static int levelOf(int stride) {
+        for (int i = 0; i < STRIDES.length; i++) {
+            if (STRIDES[i] == stride) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("unsupported stride " + stride);
+    }
+}
@@ -0,0 +1,123 @@
+package com.samples.thermalapp.detection;
+
+/**
+ * Immutable snapshot of the room conditions that decide the condensation threshold.
+ * <p>
+ * Temperatures are always Celsius, the dew point is derived once when the snapshot is created. Snapshots are meant to be
+ * published as a whole, eg through an {@link java.util.concurrent.atomic.AtomicReference}, so a reader never sees a
+ * temperature of one update with the humidity of another.
+ */
+public final class AmbientConditions {
+
+    public static final double KELVIN_OFFSET = 273.15;
+
+    /**
+     * Where the values came from
+     */
+    public enum Source {
+        DEFAULT, MANUAL, SENSOR
+    }
+
+    //saturated air at room temperature, the dew point equals the temperature until real values are known
+    public static final AmbientConditions DEFAULT = new AmbientConditions(20, 100, 0, Source.DEFAULT);
+
+    private final double temperature;
+    private final double humidity;
+    private final double dewPoint;
+    private final long timestampMillis;
+    private final Source source;
+
+    /**
+     * @param temperature     air temperature in Celsius
+     * @param humidity        relative humidity in percent, 0 to 100
+     * @param timestampMillis when the values were measured or entered, milliseconds since the epoch
+     */
+    public AmbientConditions(double temperature, double humidity, long timestampMillis, Source source) {
+        if (Double.isNaN(temperature) || Double.isInfinite(temperature)) {
+            throw new IllegalArgumentException("invalid temperature " + temperature);
+        }
+        if (!(humidity >= 0 && humidity <= 100)) {
+            throw new IllegalArgumentException("humidity must be between 0 and 100, was " + humidity);
+        }
+        if (source == null) {
+            throw new IllegalArgumentException("source is null");
+        }
+        this.temperature = temperature;
+        this.humidity = humidity;
+        this.dewPoint = dewPoint(temperature, humidity);
+        this.timestampMillis = timestampMillis;
+        this.source = source;
+    }
+
+    /**
+     * Dew point approximation Td = (RH/100)^(1/8) * (112 + 0.9 T) + 0.1 T - 112, Celsius in and out
+     */
+    public static double dewPoint(double temperature, double humidity) {
+        return Math.pow(humidity / 100, 1.0 / 8.0) * (112 + .9 * temperature) + .1 * temperature - 112;
+    }
+
+    public static double fahrenheitToCelsius(double fahrenheit) {
+        return (fahrenheit - 32) * (5.0 / 9.0);
+    }
+
+    /**
+     * A copy with another temperature, the humidity is kept
+     */
+    public AmbientConditions withTemperature(double temperature, long timestampMillis, Source source) {
+        return new AmbientConditions(temperature, humidity, timestampMillis, source);
+    }
+
+    /**
+     * A copy with another humidity, the temperature is kept
+     */
+    public AmbientConditions withHumidity(double humidity, long timestampMillis, Source source) {
+        return new AmbientConditions(temperature, humidity, timestampMillis, source);
+    }
+
+    /**
+     * Air temperature in Celsius
+     */
+    public double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * Relative humidity in percent
+     */
+    public double getHumidity() {
+        return humidity;
+    }
+
+    /**
+     * Dew point in Celsius
+     */
+    public double getDewPoint() {
+        return dewPoint;
+    }
+
+    /**
+     * Dew point in Kelvin, the unit of the camera temperatures
+     */
+    public double getDewPointKelvin() {
+        return dewPoint + KELVIN_OFFSET;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return "AmbientConditions{" +
+                "temperature=" + temperature +
+                ", humidity=" + humidity +
+                ", dewPoint=" + dewPoint +
+                ", timestamp=" + timestampMillis +
+                ", source=" + source +
+                '}';
+    }
+}
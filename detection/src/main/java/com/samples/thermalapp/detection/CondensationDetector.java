@@ -0,0 +1,474 @@
+package com.samples.thermalapp.detection;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Finds the pixels of a thermal frame that are colder than a threshold, usually the dew point of the room.
+ * <p>
+ * Frames are row major, {@code width} values per row. The result is a risk mask with one byte per pixel
+ * ({@link #RISK} below the threshold, {@link #DRY} otherwise) and the {@link DetectionStats} of the frame.
+ * The mask and statistics are reused between frames, so a detector should only be used from one thread at a time.
+ * <p>
+ * Large frames can be split into row bands that are classified in parallel, see {@link #setParallelism(ForkJoinPool, int)}.
+ * Statistics are collected per row and combined in row order, so the result does not depend on how the frame was split.
+ * Besides the statistics of the whole frame the detector reports the statistics of every row band, see
+ * {@link #getBandStats(int)}. Serial and sampled frames report the same bands a parallel frame of their size is split into.
+ * <p>
+ * With a sample stride above 1, see {@link #setSampleStride(int)}, only every {@code stride}-th pixel of every
+ * {@code stride}-th row is classified and its result fills its {@code stride x stride} block of the mask. The statistics
+ * then cover the sampled pixels only, see {@link DetectionStats#getDensity()}.
+ */
+public class CondensationDetector {
+
+    public static final byte DRY = 0;
+    public static final byte RISK = 1;
+
+    //frames from this size on are split into bands, 320x240 and up
+    public static final int DEFAULT_PARALLEL_PIXELS = 320 * 240;
+    //a band should be large enough to be worth a task
+    static final int BAND_PIXELS = 16 * 1024;
+
+    //reused between frames, only reallocated when the frame size changes
+    private byte[] mask = new byte[0];
+    private int[] rowRisk = new int[0];
+    private double[] rowMin = new double[0];
+    private double[] rowMax = new double[0];
+    private double[] rowSum = new double[0];
+    private final DetectionStats stats = new DetectionStats();
+    private DetectionStats[] bandStats = new DetectionStats[0];
+    private int bandCount;
+    private int bandRows;
+
+    private int sampleStride = 1;
+    //the stride of the frame being classified
+    private int frameStride = 1;
+
+    private ForkJoinPool pool;
+    private int parallelPixels = DEFAULT_PARALLEL_PIXELS;
+    private Bands bands;
+    private int bandsWidth;
+    private int bandsHeight;
+
+    //input of the frame being classified, read by the bands
+    private float[] floatFrame;
+    private short[] shortFrame;
+    private int frameWidth;
+    private float floatThreshold;
+    private int shortThreshold;
+
+    /**
+     * Classify frames of at least {@code minPixels} pixels in row bands on the given pool, {@code null} turns it off.
+     * Once the pool is shut down frames are classified on the calling thread again
+     */
+    public void setParallelism(ForkJoinPool pool, int minPixels) {
+        if (minPixels < 1) {
+            throw new IllegalArgumentException("minPixels must be positive, was " + minPixels);
+        }
+        this.pool = pool;
+        this.parallelPixels = minPixels;
+    }
+
+    /**
+     * Classify every {@code stride}-th pixel of every {@code stride}-th row, 1 classifies every pixel. Takes effect with the
+     * next frame and has to be set on the thread that classifies
+     */
+    public void setSampleStride(int stride) {
+        if (stride < 1) {
+            throw new IllegalArgumentException("stride must be positive, was " + stride);
+        }
+        this.sampleStride = stride;
+    }
+
+    public int getSampleStride() {
+        return sampleStride;
+    }
+
+    /**
+     * Whether a frame of the given size is split into bands, sampled frames are small enough for one thread
+     */
+    public boolean isParallel(int width, int height) {
+        ForkJoinPool pool = this.pool;
+        return pool != null && !pool.isShutdown() && width * height >= parallelPixels && height > 1 && sampleStride == 1;
+    }
+
+    /**
+     * Classify a frame of temperatures
+     *
+     * @param frame     temperatures, at least {@code width * height} values
+     * @param threshold pixels strictly below this value are marked as {@link #RISK}, same unit as the frame
+     * @return the statistics of the frame, overwritten by the next call
+     */
+    public DetectionStats detect(float[] frame, int width, int height, float threshold) {
+        prepare(frame.length, width, height);
+        floatFrame = frame;
+        floatThreshold = threshold;
+        try {
+            classify(width, height);
+        } finally {
+            floatFrame = null;
+        }
+        return finish(height);
+    }
+
+    /**
+     * Classify a frame of unsigned 16 bit values, eg raw radiometric counts
+     *
+     * @param frame     unsigned values, at least {@code width * height} values
+     * @param threshold pixels strictly below this value are marked as {@link #RISK}, same unit as the frame
+     * @return the statistics of the frame, overwritten by the next call
+     */
+    public DetectionStats detect(short[] frame, int width, int height, int threshold) {
+        prepare(frame.length, width, height);
+        shortFrame = frame;
+        shortThreshold = threshold;
+        try {
+            classify(width, height);
+        } finally {
+            shortFrame = null;
+        }
+        return finish(height);
+    }
+
+    /**
+     * The risk mask of the last frame, {@code width} values per row. Only the first {@code width * height} values are valid
+     */
+    public byte[] getMask() {
+        return mask;
+    }
+
+    /**
+     * The statistics of the last frame
+     */
+    public DetectionStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Number of row bands of the last frame
+     */
+    public int getBandCount() {
+        return bandCount;
+    }
+
+    /**
+     * Rows per band of the last frame, the last band can have fewer
+     */
+    public int getBandRows() {
+        return bandRows;
+    }
+
+    /**
+     * The statistics of one row band of the last frame, band {@code band} starts at row {@code band * getBandRows()}.
+     * Overwritten by the next frame like {@link #getStats()}
+     */
+    public DetectionStats getBandStats(int band) {
+        if (band < 0 || band >= bandCount) {
+            throw new IndexOutOfBoundsException("band " + band + " of " + bandCount);
+        }
+        return bandStats[band];
+    }
+
+    private void prepare(int length, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("invalid frame size " + width + "x" + height);
+        }
+        int size = width * height;
+        if (length < size) {
+            throw new IllegalArgumentException("frame has " + length + " values, expected " + size + " for " + width + "x" + height);
+        }
+        if (mask.length < size) {
+            mask = new byte[size];
+        }
+        if (rowRisk.length < height) {
+            rowRisk = new int[height];
+            rowMin = new double[height];
+            rowMax = new double[height];
+            rowSum = new double[height];
+        }
+        bandRows = rowsPerBand(width);
+        bandCount = (height + bandRows - 1) / bandRows;
+        if (bandStats.length < bandCount) {
+            DetectionStats[] grown = new DetectionStats[bandCount];
+            System.arraycopy(bandStats, 0, grown, 0, bandStats.length);
+            for (int i = bandStats.length; i < bandCount; i++) {
+                grown[i] = new DetectionStats();
+            }
+            bandStats = grown;
+        }
+        stats.reset(width, height);
+        frameStride = sampleStride;
+    }
+
+    private static int rowsPerBand(int width) {
+        return Math.max(1, BAND_PIXELS / width);
+    }
+
+    private void classify(int width, int height) {
+        frameWidth = width;
+        if (frameStride > 1) {
+            classifySampled(height);
+            return;
+        }
+        if (!isParallel(width, height)) {
+            classifyRows(0, height);
+            return;
+        }
+        if (bandsWidth != width || bandsHeight != height) {
+            Band[] rows = new Band[bandCount];
+            for (int i = 0; i < bandCount; i++) {
+                rows[i] = new Band(i * bandRows, Math.min(height, (i + 1) * bandRows));
+            }
+            bands = new Bands(rows);
+            bandsWidth = width;
+            bandsHeight = height;
+        }
+        //the tasks are kept between frames, they only have to be reset before they can run again
+        bands.reinitialize();
+        try {
+            pool.invoke(bands);
+        } catch (RejectedExecutionException e) {
+            //the pool was shut down since the check above, nothing ran yet
+            classifyRows(0, height);
+        }
+    }
+
+    private void classifyRows(int fromRow, int toRow) {
+        if (floatFrame != null) {
+            classifyRows(floatFrame, floatThreshold, fromRow, toRow);
+        } else {
+            classifyRows(shortFrame, shortThreshold, fromRow, toRow);
+        }
+    }
+
+    private void classifyRows(float[] frame, float threshold, int fromRow, int toRow) {
+        byte[] mask = this.mask;
+        int width = frameWidth;
+        for (int row = fromRow; row < toRow; row++) {
+            int riskPixels = 0;
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            double sum = 0;
+            int end = (row + 1) * width;
+            for (int i = row * width; i < end; i++) {
+                float value = frame[i];
+                if (value < threshold) {
+                    mask[i] = RISK;
+                    riskPixels++;
+                } else {
+                    mask[i] = DRY;
+                }
+                if (value < min) {
+                    min = value;
+                }
+                if (value > max) {
+                    max = value;
+                }
+                sum += value;
+            }
+            rowRisk[row] = riskPixels;
+            rowMin[row] = min;
+            rowMax[row] = max;
+            rowSum[row] = sum;
+        }
+    }
+
+    private void classifyRows(short[] frame, int threshold, int fromRow, int toRow) {
+        byte[] mask = this.mask;
+        int width = frameWidth;
+        for (int row = fromRow; row < toRow; row++) {
+            int riskPixels = 0;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            long sum = 0;
+            int end = (row + 1) * width;
+            for (int i = row * width; i < end; i++) {
+                int value = frame[i] & 0xffff;
+                if (value < threshold) {
+                    mask[i] = RISK;
+                    riskPixels++;
+                } else {
+                    mask[i] = DRY;
+                }
+                if (value < min) {
+                    min = value;
+                }
+                if (value > max) {
+                    max = value;
+                }
+                sum += value;
+            }
+            rowRisk[row] = riskPixels;
+            rowMin[row] = min;
+            rowMax[row] = max;
+            rowSum[row] = sum;
+        }
+    }
+
+    /**
+     * Classify every frameStride-th pixel of every frameStride-th row and fill their blocks of the mask
+     */
+    private void classifySampled(int height) {
+        int width = frameWidth;
+        int stride = frameStride;
+        for (int row = 0; row < height; row++) {
+            int start = row * width;
+            if (row % stride != 0) {
+                //the rows between two sampled rows repeat the sampled row above
+                System.arraycopy(mask, start - width, mask, start, width);
+                rowRisk[row] = 0;
+                rowMin[row] = Double.POSITIVE_INFINITY;
+                rowMax[row] = Double.NEGATIVE_INFINITY;
+                rowSum[row] = 0;
+            } else if (floatFrame != null) {
+                sampleRow(floatFrame, floatThreshold, row, stride);
+            } else {
+                sampleRow(shortFrame, shortThreshold, row, stride);
+            }
+        }
+    }
+
+    private void sampleRow(float[] frame, float threshold, int row, int stride) {
+        byte[] mask = this.mask;
+        int width = frameWidth;
+        int start = row * width;
+        int end = start + width;
+        int riskPixels = 0;
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (int i = start; i < end; i += stride) {
+            float value = frame[i];
+            byte risk = DRY;
+            if (value < threshold) {
+                risk = RISK;
+                riskPixels++;
+            }
+            int blockEnd = Math.min(i + stride, end);
+            for (int j = i; j < blockEnd; j++) {
+                mask[j] = risk;
+            }
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+            sum += value;
+        }
+        rowRisk[row] = riskPixels;
+        rowMin[row] = min;
+        rowMax[row] = max;
+        rowSum[row] = sum;
+    }
+
+    private void sampleRow(short[] frame, int threshold, int row, int stride) {
+        byte[] mask = this.mask;
+        int width = frameWidth;
+        int start = row * width;
+        int end = start + width;
+        int riskPixels = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        long sum = 0;
+        for (int i = start; i < end; i += stride) {
+            int value = frame[i] & 0xffff;
+            byte risk = DRY;
+            if (value < threshold) {
+                risk = RISK;
+                riskPixels++;
+            }
+            int blockEnd = Math.min(i + stride, end);
+            for (int j = i; j < blockEnd; j++) {
+                mask[j] = risk;
+            }
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+            sum += value;
+        }
+        rowRisk[row] = riskPixels;
+        rowMin[row] = min;
+        rowMax[row] = max;
+        rowSum[row] = sum;
+    }
+
+    private DetectionStats finish(int height) {
+        for (int band = 0; band < bandCount; band++) {
+            int fromRow = band * bandRows;
+            int toRow = Math.min(height, fromRow + bandRows);
+            bandStats[band].reset(stats.width, toRow - fromRow);
+            combineRows(fromRow, toRow, bandStats[band]);
+        }
+        combineRows(0, height, stats);
+        return stats;
+    }
+
+    /**
+     * Combine the row statistics of {@code fromRow} to {@code toRow} (exclusive) in row order
+     */
+    private void combineRows(int fromRow, int toRow, DetectionStats into) {
+        int riskPixels = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            riskPixels += rowRisk[row];
+            min = Math.min(min, rowMin[row]);
+            max = Math.max(max, rowMax[row]);
+            sum += rowSum[row];
+        }
+        int stride = frameStride;
+        //sampled rows are the multiples of the stride
+        int sampledRows = (toRow + stride - 1) / stride - (fromRow + stride - 1) / stride;
+        into.classifiedPixels = ((into.width + stride - 1) / stride) * sampledRows;
+        into.riskPixels = riskPixels;
+        into.min = min;
+        into.max = max;
+        into.sum = sum;
+    }
+
+    /**
+     * A range of rows classified as one fork/join task
+     */
+    //tasks are never serialized, they only live for the frames of one detector
+    @SuppressWarnings("serial")
+    private final class Band extends RecursiveAction {
+        private final int fromRow;
+        private final int toRow;
+
+        Band(int fromRow, int toRow) {
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            classifyRows(fromRow, toRow);
+        }
+    }
+
+    /**
+     * Runs all bands of a frame and waits for them
+     */
+    @SuppressWarnings("serial")
+    private static final class Bands extends RecursiveAction {
+        private final Band[] bands;
+
+        Bands(Band[] bands) {
+            this.bands = bands;
+        }
+
+        @Override
+        protected void compute() {
+            for (Band band : bands) {
+                band.reinitialize();
+            }
+            invokeAll(bands);
+        }
+    }
+}
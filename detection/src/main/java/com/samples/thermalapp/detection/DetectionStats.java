@@ -0,0 +1,106 @@
+package com.samples.thermalapp.detection;
+
+/**
+ * Statistics of one classified frame, the instance is owned by a {@link CondensationDetector} and overwritten on every frame
+ */
+public class DetectionStats {
+
+    int width;
+    int height;
+    int classifiedPixels;
+    int riskPixels;
+    double min;
+    double max;
+    double sum;
+
+    void reset(int width, int height) {
+        this.width = width;
+        this.height = height;
+        classifiedPixels = 0;
+        riskPixels = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        sum = 0;
+    }
+
+    /**
+     * Copy the values of another instance, eg to keep them after the detector moved on to the next frame
+     */
+    public void set(DetectionStats other) {
+        width = other.width;
+        height = other.height;
+        classifiedPixels = other.classifiedPixels;
+        riskPixels = other.riskPixels;
+        min = other.min;
+        max = other.max;
+        sum = other.sum;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Number of pixels that were compared against the threshold
+     */
+    public int getClassifiedPixels() {
+        return classifiedPixels;
+    }
+
+    /**
+     * Number of classified pixels below the threshold
+     */
+    public int getRiskPixels() {
+        return riskPixels;
+    }
+
+    /**
+     * Share of the frame's pixels that were classified, below 1 when the detector samples the frame
+     */
+    public double getDensity() {
+        int pixels = width * height;
+        return pixels == 0 ? 0 : (double) classifiedPixels / pixels;
+    }
+
+    /**
+     * Share of the classified pixels that are below the threshold, between 0 and 1
+     */
+    public double getRiskFraction() {
+        return classifiedPixels == 0 ? 0 : (double) riskPixels / classifiedPixels;
+    }
+
+    /**
+     * Lowest classified value, in the unit of the frame
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Highest classified value, in the unit of the frame
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Mean of the classified values, in the unit of the frame
+     */
+    public double getMean() {
+        return classifiedPixels == 0 ? Double.NaN : sum / classifiedPixels;
+    }
+
+    @Override
+    public String toString() {
+        return "DetectionStats{" + width + "x" + height +
+                ", risk=" + riskPixels + "/" + classifiedPixels +
+                ", min=" + min +
+                ", max=" + max +
+                ", mean=" + getMean() +
+                '}';
+    }
+}
@@ -0,0 +1,259 @@
+package com.samples.thermalapp.detection;
+
+import java.util.Arrays;
+
+/**
+ * Classifies frames of unsigned 16 bit values like {@link CondensationDetector}, but only the tiles that changed.
+ * <p>
+ * The frame is split into square tiles. A tile is classified again when one of its values differs by more than
+ * {@code changeThreshold} from the values it was last classified with, when one of those values was within
+ * {@code changeThreshold} of the threshold, or when the threshold, change threshold or frame size changed; otherwise its
+ * part of the mask and its statistics are kept from an earlier frame. Because a tile is compared against the values it
+ * was classified with and not against the previous frame, a slow drift still triggers it eventually, and a tile next to
+ * the threshold is classified every frame, so no pixel can drift across the threshold unnoticed. The mask is therefore
+ * always the mask of a {@link CondensationDetector}.
+ * <p>
+ * Statistics of kept tiles are those of the values they were classified with, so min, max and mean can be off by up to
+ * {@code changeThreshold}. A threshold of 0 gives exactly the result of a {@link CondensationDetector}.
+ * The mask and statistics are reused between frames, so a detector should only be used from one thread at a time.
+ */
+public class IncrementalDetector {
+
+    public static final int DEFAULT_TILE_SIZE = 16;
+    //0.1 K for centikelvin frames, about the noise of the FLIR ONE
+    public static final int DEFAULT_CHANGE_THRESHOLD = 10;
+
+    private final int tileSize;
+    private volatile int changeThreshold;
+    private volatile boolean resetRequested = false;
+
+    private byte[] mask = new byte[0];
+    //the values every tile was last classified with
+    private short[] reference = new short[0];
+    private int[] tileRisk = new int[0];
+    private int[] tileMin = new int[0];
+    private int[] tileMax = new int[0];
+    private long[] tileSum = new long[0];
+    //tiles with a value that a change within the change threshold could move across the threshold
+    private boolean[] tileNearThreshold = new boolean[0];
+    private final DetectionStats stats = new DetectionStats();
+
+    private int width = -1;
+    private int height = -1;
+    private int threshold = -1;
+    //the change threshold the tiles were last classified with
+    private int classifiedChangeThreshold = -1;
+    private int tilesX;
+    private int tilesY;
+    private int changedTiles;
+
+    public IncrementalDetector() {
+        this(DEFAULT_TILE_SIZE, DEFAULT_CHANGE_THRESHOLD);
+    }
+
+    public IncrementalDetector(int tileSize, int changeThreshold) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("tileSize must be positive, was " + tileSize);
+        }
+        this.tileSize = tileSize;
+        setChangeThreshold(changeThreshold);
+    }
+
+    /**
+     * Largest difference of a value, in the unit of the frame, that does not count as a change
+     */
+    public void setChangeThreshold(int changeThreshold) {
+        if (changeThreshold < 0) {
+            throw new IllegalArgumentException("changeThreshold must not be negative, was " + changeThreshold);
+        }
+        this.changeThreshold = changeThreshold;
+    }
+
+    public int getChangeThreshold() {
+        return changeThreshold;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Classify every tile of the next frame, eg after the camera was reconnected
+     */
+    public void reset() {
+        resetRequested = true;
+    }
+
+    /**
+     * Classify the changed tiles of a frame
+     *
+     * @param frame     unsigned values, at least {@code width * height} values
+     * @param threshold pixels strictly below this value are marked as {@link CondensationDetector#RISK}
+     * @return the statistics of the frame, overwritten by the next call
+     */
+    public DetectionStats detect(short[] frame, int width, int height, int threshold) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("invalid frame size " + width + "x" + height);
+        }
+        int size = width * height;
+        if (frame.length < size) {
+            throw new IllegalArgumentException("frame has " + frame.length + " values, expected " + size + " for " + width + "x" + height);
+        }
+        int changeThreshold = this.changeThreshold;
+        boolean all = resetRequested || width != this.width || height != this.height || threshold != this.threshold
+                || changeThreshold != classifiedChangeThreshold;
+        resetRequested = false;
+        if (width != this.width || height != this.height) {
+            resize(width, height);
+        }
+        this.threshold = threshold;
+        classifiedChangeThreshold = changeThreshold;
+
+        changedTiles = 0;
+        for (int tileY = 0; tileY < tilesY; tileY++) {
+            int fromRow = tileY * tileSize;
+            int toRow = Math.min(height, fromRow + tileSize);
+            for (int tileX = 0; tileX < tilesX; tileX++) {
+                int fromColumn = tileX * tileSize;
+                int toColumn = Math.min(width, fromColumn + tileSize);
+                int tile = tileY * tilesX + tileX;
+                if (all || tileNearThreshold[tile] || changed(frame, fromRow, toRow, fromColumn, toColumn, changeThreshold)) {
+                    classify(frame, tile, fromRow, toRow, fromColumn, toColumn, changeThreshold);
+                    changedTiles++;
+                }
+            }
+        }
+        return finish();
+    }
+
+    /**
+     * The risk mask of the last frame, {@code width} values per row. Only the first {@code width * height} values are valid
+     */
+    public byte[] getMask() {
+        return mask;
+    }
+
+    /**
+     * The statistics of the last frame
+     */
+    public DetectionStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Number of tiles of the last frame
+     */
+    public int getTileCount() {
+        return tilesX * tilesY;
+    }
+
+    /**
+     * Number of tiles classified again in the last frame
+     */
+    public int getChangedTiles() {
+        return changedTiles;
+    }
+
+    /**
+     * Whether the mask of the last frame can differ from the one before it
+     */
+    public boolean hasChanged() {
+        return changedTiles > 0;
+    }
+
+    private void resize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int size = width * height;
+        if (mask.length < size) {
+            mask = new byte[size];
+            reference = new short[size];
+        }
+        tilesX = (width + tileSize - 1) / tileSize;
+        tilesY = (height + tileSize - 1) / tileSize;
+        int tiles = tilesX * tilesY;
+        if (tileRisk.length < tiles) {
+            tileRisk = new int[tiles];
+            tileMin = new int[tiles];
+            tileMax = new int[tiles];
+            tileSum = new long[tiles];
+            tileNearThreshold = new boolean[tiles];
+        }
+        Arrays.fill(tileRisk, 0);
+    }
+
+    private boolean changed(short[] frame, int fromRow, int toRow, int fromColumn, int toColumn, int changeThreshold) {
+        short[] reference = this.reference;
+        for (int row = fromRow; row < toRow; row++) {
+            int end = row * width + toColumn;
+            for (int i = row * width + fromColumn; i < end; i++) {
+                int delta = (frame[i] & 0xffff) - (reference[i] & 0xffff);
+                if (delta > changeThreshold || -delta > changeThreshold) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void classify(short[] frame, int tile, int fromRow, int toRow, int fromColumn, int toColumn, int changeThreshold) {
+        byte[] mask = this.mask;
+        int threshold = this.threshold;
+        //values in [threshold - changeThreshold, threshold + changeThreshold) flip with a change the tile would not notice
+        int nearLow = threshold - changeThreshold;
+        int nearHigh = threshold + changeThreshold;
+        boolean near = false;
+        int riskPixels = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        long sum = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            int start = row * width + fromColumn;
+            int end = row * width + toColumn;
+            for (int i = start; i < end; i++) {
+                int value = frame[i] & 0xffff;
+                if (value < threshold) {
+                    mask[i] = CondensationDetector.RISK;
+                    riskPixels++;
+                } else {
+                    mask[i] = CondensationDetector.DRY;
+                }
+                if (value < min) {
+                    min = value;
+                }
+                if (value > max) {
+                    max = value;
+                }
+                sum += value;
+                near |= value >= nearLow && value < nearHigh;
+            }
+            System.arraycopy(frame, start, reference, start, end - start);
+        }
+        tileNearThreshold[tile] = near;
+        tileRisk[tile] = riskPixels;
+        tileMin[tile] = min;
+        tileMax[tile] = max;
+        tileSum[tile] = sum;
+    }
+
+    private DetectionStats finish() {
+        stats.reset(width, height);
+        int riskPixels = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        long sum = 0;
+        int tiles = tilesX * tilesY;
+        for (int tile = 0; tile < tiles; tile++) {
+            riskPixels += tileRisk[tile];
+            min = Math.min(min, tileMin[tile]);
+            max = Math.max(max, tileMax[tile]);
+            sum += tileSum[tile];
+        }
+        stats.classifiedPixels = width * height;
+        stats.riskPixels = riskPixels;
+        stats.min = min;
+        stats.max = max;
+        stats.sum = sum;
+        return stats;
+    }
+}
@@ -0,0 +1,141 @@
+package com.samples.thermalapp.detection;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed memory histogram of latencies in microseconds, with buckets in the style of HdrHistogram.
+ * <p>
+ * Values below {@link #LINEAR_LIMIT} get a bucket each, above it every power of two is split into {@link #SUB_BUCKETS}
+ * buckets, so a percentile is off by at most about 3% from 64 us up to {@link #MAX_VALUE}. Larger values are counted as
+ * {@link #MAX_VALUE} in the buckets and the mean, the exact maximum is kept separately.
+ * <p>
+ * Recording is a few atomic increments and never allocates. Values can be recorded from any thread, while a percentile
+ * is read concurrently it may or may not include the values being recorded.
+ */
+public class LatencyHistogram {
+
+    public static final int LINEAR_LIMIT = 64;
+    public static final int SUB_BUCKETS = 32;
+    //about 35 minutes
+    public static final long MAX_VALUE = Integer.MAX_VALUE;
+
+    private static final int LINEAR_BITS = 6;
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int BUCKETS = bucket(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Count a latency
+     *
+     * @param micros latency in microseconds, negative values count as 0
+     */
+    public void record(long micros) {
+        long value = Math.max(0, micros);
+        long clamped = Math.min(value, MAX_VALUE);
+        counts.incrementAndGet(bucket(clamped));
+        count.incrementAndGet();
+        //clamped, a bogus huge value must not overflow the sum into a negative mean
+        sum.addAndGet(clamped);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            //another thread recorded a new maximum at the same time
+            current = max.get();
+        }
+    }
+
+    /**
+     * Forget all recorded values
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Number of recorded values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Highest recorded value, microseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Mean of the recorded values, microseconds, NaN if there are none
+     */
+    public double getMean() {
+        long count = this.count.get();
+        return count == 0 ? Double.NaN : (double) sum.get() / count;
+    }
+
+    /**
+     * The value that {@code percentile} percent of the recorded values are at or below, eg 50 for the median and 99 for p99
+     *
+     * @return microseconds, rounded up to the end of its bucket, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100, was " + percentile);
+        }
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(lowestValue(i + 1) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + getCount() +
+                ", p50=" + getPercentile(50) +
+                ", p99=" + getPercentile(99) +
+                ", max=" + getMax() +
+                '}';
+    }
+
+    static int bucket(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (magnitude - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Lowest value counted in a bucket
+     */
+    static long lowestValue(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int magnitude = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + LINEAR_BITS;
+        long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return subBucket << (magnitude - SUB_BUCKET_BITS);
+    }
+}
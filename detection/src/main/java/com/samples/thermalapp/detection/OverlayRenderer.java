@@ -0,0 +1,92 @@
+package com.samples.thermalapp.detection;
+
+import java.util.Arrays;
+
+/**
+ * Renders the condensation risk dots of a {@link CondensationDetector} mask into an ARGB pixel buffer.
+ * <p>
+ * The mask is sampled every {@code stride} pixels and a {@code dotSize} square is drawn for every sample at risk.
+ */
+public class OverlayRenderer {
+
+    public static final int DEFAULT_DOT_SIZE = 3;
+    public static final int DEFAULT_STRIDE = 9;
+    //neon green, same as Color.parseColor("#39ff14")
+    public static final int DEFAULT_COLOR = 0xff39ff14;
+
+    private volatile int dotSize;
+    private volatile int stride;
+    private volatile int color;
+
+    public OverlayRenderer() {
+        this(DEFAULT_DOT_SIZE, DEFAULT_STRIDE, DEFAULT_COLOR);
+    }
+
+    public OverlayRenderer(int dotSize, int stride, int color) {
+        setDotSize(dotSize);
+        setStride(stride);
+        setColor(color);
+    }
+
+    public void setDotSize(int dotSize) {
+        if (dotSize < 1) {
+            throw new IllegalArgumentException("dotSize must be positive, was " + dotSize);
+        }
+        this.dotSize = dotSize;
+    }
+
+    public void setStride(int stride) {
+        if (stride < 1) {
+            throw new IllegalArgumentException("stride must be positive, was " + stride);
+        }
+        this.stride = stride;
+    }
+
+    public void setColor(int color) {
+        this.color = color;
+    }
+
+    public int getDotSize() {
+        return dotSize;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    /**
+     * Render the dots into a pixel buffer
+     *
+     * @param pixels         ARGB pixels, {@code pixelsScanline} values per row
+     * @param mask           risk mask, {@code maskScanline} values per row
+     * @param width          number of columns to sample
+     * @param height         number of rows to sample
+     * @return the number of dots drawn
+     */
+    public int render(int[] pixels, int pixelsScanline, byte[] mask, int maskScanline, int width, int height) {
+        //read the settings once, they might be changed from another thread while we draw
+        int dotSize = this.dotSize;
+        int stride = this.stride;
+        int color = this.color;
+
+        int dots = 0;
+        for (int j = 0; j < height - dotSize; j += stride) {
+            int maskRow = j * maskScanline;
+            for (int i = 0; i < width - dotSize; i += stride) {
+                if (mask[maskRow + i] == CondensationDetector.RISK) {
+                    int offset = j * pixelsScanline + i;
+                    for (int y = 0; y < dotSize; y++) {
+                        Arrays.fill(pixels, offset, offset + dotSize, color);
+                        offset += pixelsScanline;
+                    }
+                    dots++;
+                }
+            }
+        }
+        return dots;
+    }
+}
@@ -0,0 +1,84 @@
+package com.samples.thermalapp.detection;
+
+/**
+ * Maps temperatures to ARGB colours through a lookup table, a plain Java stand-in for the palette rendering of the thermal SDK
+ */
+public class PaletteMapper {
+
+    //black, blue, purple, orange, yellow, white
+    private static final int[] IRON_STOPS = {
+            0xff000000, 0xff20008c, 0xffcc0077, 0xffffa500, 0xffffff00, 0xffffffff
+    };
+
+    private final int[] colors;
+
+    /**
+     * @param colors ARGB lookup table, the first entry is used for the minimum and the last for the maximum
+     */
+    public PaletteMapper(int[] colors) {
+        if (colors.length < 2) {
+            throw new IllegalArgumentException("a palette needs at least 2 colors, was " + colors.length);
+        }
+        this.colors = colors.clone();
+    }
+
+    /**
+     * A 256 colour palette similar to the "iron" palette of the thermal SDK
+     */
+    public static PaletteMapper iron() {
+        int[] colors = new int[256];
+        int segments = IRON_STOPS.length - 1;
+        for (int i = 0; i < colors.length; i++) {
+            float position = (float) i * segments / (colors.length - 1);
+            int stop = Math.min((int) position, segments - 1);
+            colors[i] = blend(IRON_STOPS[stop], IRON_STOPS[stop + 1], position - stop);
+        }
+        return new PaletteMapper(colors);
+    }
+
+    /**
+     * Map the first {@code size} values of the frame, {@code min} and {@code max} get the first and last palette colour
+     */
+    public void map(float[] frame, int size, float min, float max, int[] pixels) {
+        int[] colors = this.colors;
+        int last = colors.length - 1;
+        float scale = max > min ? last / (max - min) : 0;
+        for (int i = 0; i < size; i++) {
+            int index = (int) ((frame[i] - min) * scale);
+            if (index < 0) {
+                index = 0;
+            } else if (index > last) {
+                index = last;
+            }
+            pixels[i] = colors[index];
+        }
+    }
+
+    /**
+     * Map the first {@code size} unsigned 16 bit values of the frame, {@code min} and {@code max} get the first and last palette colour
+     */
+    public void map(short[] frame, int size, int min, int max, int[] pixels) {
+        int[] colors = this.colors;
+        int last = colors.length - 1;
+        float scale = max > min ? (float) last / (max - min) : 0;
+        for (int i = 0; i < size; i++) {
+            int index = (int) (((frame[i] & 0xffff) - min) * scale);
+            if (index < 0) {
+                index = 0;
+            } else if (index > last) {
+                index = last;
+            }
+            pixels[i] = colors[index];
+        }
+    }
+
+    private static int blend(int from, int to, float amount) {
+        int color = 0xff000000;
+        for (int shift = 0; shift < 24; shift += 8) {
+            int a = (from >> shift) & 0xff;
+            int b = (to >> shift) & 0xff;
+            color |= Math.round(a + (b - a) * amount) << shift;
+        }
+        return color;
+    }
+}
@@ -0,0 +1,80 @@
+package com.samples.thermalapp.detection;
+
+/**
+ * Linear mapping between temperatures and unsigned 16 bit raw values, {@code temperature = raw * gain + offset}.
+ * <p>
+ * Converting the threshold once with {@link #toRawThreshold(double)} lets a frame of raw values be classified with
+ * integer compares by {@link CondensationDetector#detect(short[], int, int, int)} instead of converting every pixel.
+ */
+public final class RadiometricScale {
+
+    public static final int MAX_RAW = 0xffff;
+
+    //Kelvin in steps of 0.01, covers 0 to 655 K
+    public static final RadiometricScale CENTIKELVIN = new RadiometricScale(0.01, 0);
+
+    private final double gain;
+    private final double offset;
+
+    public RadiometricScale(double gain, double offset) {
+        if (!(gain > 0) || Double.isInfinite(gain)) {
+            throw new IllegalArgumentException("gain must be positive, was " + gain);
+        }
+        this.gain = gain;
+        this.offset = offset;
+    }
+
+    public double getGain() {
+        return gain;
+    }
+
+    public double getOffset() {
+        return offset;
+    }
+
+    /**
+     * The temperature of a raw value
+     */
+    public double toTemperature(int raw) {
+        return raw * gain + offset;
+    }
+
+    /**
+     * The nearest raw value of a temperature, clamped to 0..{@link #MAX_RAW}
+     */
+    public int toRaw(double temperature) {
+        double raw = Math.rint((temperature - offset) / gain);
+        if (raw <= 0) {
+            return 0;
+        }
+        return raw >= MAX_RAW ? MAX_RAW : (int) raw;
+    }
+
+    /**
+     * Convert a block of temperatures to raw values
+     */
+    public void toRaw(double[] temperatures, short[] raw, int size) {
+        double scale = 1 / gain;
+        for (int i = 0; i < size; i++) {
+            double value = Math.rint((temperatures[i] - offset) * scale);
+            raw[i] = (short) (value <= 0 ? 0 : value >= MAX_RAW ? MAX_RAW : (int) value);
+        }
+    }
+
+    /**
+     * The raw threshold for a temperature threshold: a raw value is below it exactly when its temperature is below
+     * {@code temperature}. Between 0 (nothing is below) and {@link #MAX_RAW} + 1 (everything is below)
+     */
+    public int toRawThreshold(double temperature) {
+        double raw = Math.ceil((temperature - offset) / gain);
+        if (raw <= 0) {
+            return 0;
+        }
+        return raw > MAX_RAW ? MAX_RAW + 1 : (int) raw;
+    }
+
+    @Override
+    public String toString() {
+        return "RadiometricScale{gain=" + gain + ", offset=" + offset + '}';
+    }
+}
@@ -0,0 +1,245 @@
+package com.samples.thermalapp.detection;
+
+import java.util.Arrays;
+
+/**
+ * Groups the {@link CondensationDetector#RISK} pixels of a mask into 8-connected regions.
+ * <p>
+ * The mask is scanned once. Every risk pixel gets the provisional label of a neighbour above or to the left, or a new one,
+ * labels that meet are merged in a union-find forest, and the area, bounds, coordinate sums and minimum value are
+ * accumulated per provisional label while scanning. Merging those per-label statistics into their roots afterwards
+ * costs one step per label instead of a second pass over the pixels. Only two rows of labels are kept.
+ * <p>
+ * Buffers and the result are reused between frames, so a labeler should only be used from one thread at a time.
+ */
+public class RegionLabeler {
+
+    //smaller regions are dropped as sensor noise
+    public static final int DEFAULT_MIN_AREA = 4;
+
+    private int minArea = DEFAULT_MIN_AREA;
+    private final RiskRegions regions = new RiskRegions();
+
+    //labels of the previous and the current row, 0 is no label
+    private int[] previousRow = new int[0];
+    private int[] currentRow = new int[0];
+
+    //per provisional label, index 0 is unused
+    private int labels;
+    private int[] parent = new int[64];
+    private int[] area = new int[64];
+    private int[] left = new int[64];
+    private int[] top = new int[64];
+    private int[] right = new int[64];
+    private int[] bottom = new int[64];
+    private long[] sumX = new long[64];
+    private long[] sumY = new long[64];
+    private double[] min = new double[64];
+
+    //values of the frame being labelled, one of them is set
+    private float[] floatFrame;
+    private short[] shortFrame;
+
+    /**
+     * Regions with fewer pixels are not reported
+     */
+    public void setMinArea(int minArea) {
+        if (minArea < 1) {
+            throw new IllegalArgumentException("minArea must be positive, was " + minArea);
+        }
+        this.minArea = minArea;
+    }
+
+    public int getMinArea() {
+        return minArea;
+    }
+
+    /**
+     * Label the mask of a frame of temperatures, the minimum of each region is taken from {@code frame}
+     *
+     * @return the regions of the frame, overwritten by the next call
+     */
+    public RiskRegions label(byte[] mask, float[] frame, int width, int height) {
+        floatFrame = frame;
+        try {
+            return label(mask, width, height);
+        } finally {
+            floatFrame = null;
+        }
+    }
+
+    /**
+     * Label the mask of a frame of unsigned 16 bit values, the minimum of each region is taken from {@code frame}
+     *
+     * @return the regions of the frame, overwritten by the next call
+     */
+    public RiskRegions label(byte[] mask, short[] frame, int width, int height) {
+        shortFrame = frame;
+        try {
+            return label(mask, width, height);
+        } finally {
+            shortFrame = null;
+        }
+    }
+
+    /**
+     * The regions of the last frame
+     */
+    public RiskRegions getRegions() {
+        return regions;
+    }
+
+    private RiskRegions label(byte[] mask, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("invalid frame size " + width + "x" + height);
+        }
+        int size = width * height;
+        int values = floatFrame != null ? floatFrame.length : shortFrame.length;
+        if (mask.length < size || values < size) {
+            throw new IllegalArgumentException("mask or frame smaller than " + width + "x" + height);
+        }
+        if (previousRow.length < width) {
+            previousRow = new int[width];
+            currentRow = new int[width];
+        }
+        Arrays.fill(previousRow, 0, width, 0);
+        labels = 0;
+        regions.reset(width, height);
+
+        for (int y = 0; y < height; y++) {
+            int[] above = previousRow;
+            int[] row = currentRow;
+            int offset = y * width;
+            int leftLabel = 0;
+            for (int x = 0; x < width; x++) {
+                if (mask[offset + x] != CondensationDetector.RISK) {
+                    row[x] = 0;
+                    leftLabel = 0;
+                    continue;
+                }
+                //neighbours already visited: left, above left, above, above right
+                int label = leftLabel;
+                label = join(label, x > 0 ? above[x - 1] : 0);
+                label = join(label, above[x]);
+                label = join(label, x + 1 < width ? above[x + 1] : 0);
+                if (label == 0) {
+                    label = newLabel(x, y);
+                }
+                add(label, x, y, offset + x);
+                row[x] = label;
+                leftLabel = label;
+            }
+            previousRow = row;
+            currentRow = above;
+        }
+        collect();
+        return regions;
+    }
+
+    /**
+     * The label to use for a pixel touching both labels, merging them if they differ
+     */
+    private int join(int label, int neighbour) {
+        if (neighbour == 0) {
+            return label;
+        }
+        if (label == 0) {
+            return neighbour;
+        }
+        int a = find(label);
+        int b = find(neighbour);
+        if (a != b) {
+            //the older label stays the root, so roots keep the scan order
+            if (a < b) {
+                parent[b] = a;
+            } else {
+                parent[a] = b;
+            }
+        }
+        return label;
+    }
+
+    private int find(int label) {
+        int root = label;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        //path compression
+        while (parent[label] != root) {
+            int next = parent[label];
+            parent[label] = root;
+            label = next;
+        }
+        return root;
+    }
+
+    private int newLabel(int x, int y) {
+        int label = ++labels;
+        if (label == parent.length) {
+            int capacity = parent.length * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            area = Arrays.copyOf(area, capacity);
+            left = Arrays.copyOf(left, capacity);
+            top = Arrays.copyOf(top, capacity);
+            right = Arrays.copyOf(right, capacity);
+            bottom = Arrays.copyOf(bottom, capacity);
+            sumX = Arrays.copyOf(sumX, capacity);
+            sumY = Arrays.copyOf(sumY, capacity);
+            min = Arrays.copyOf(min, capacity);
+        }
+        parent[label] = label;
+        area[label] = 0;
+        left[label] = x;
+        top[label] = y;
+        right[label] = x;
+        bottom[label] = y;
+        sumX[label] = 0;
+        sumY[label] = 0;
+        min[label] = Double.POSITIVE_INFINITY;
+        return label;
+    }
+
+    private void add(int label, int x, int y, int index) {
+        area[label]++;
+        if (x < left[label]) {
+            left[label] = x;
+        }
+        if (x > right[label]) {
+            right[label] = x;
+        }
+        //rows are scanned top down, so top never changes and bottom is the current row
+        bottom[label] = y;
+        sumX[label] += x;
+        sumY[label] += y;
+        double value = floatFrame != null ? floatFrame[index] : shortFrame[index] & 0xffff;
+        if (value < min[label]) {
+            min[label] = value;
+        }
+    }
+
+    /**
+     * Merge the statistics of every label into its root and report the roots
+     */
+    private void collect() {
+        //children have higher labels than their roots, so going backwards merges every label before its root is read
+        for (int label = labels; label > 0; label--) {
+            int root = find(label);
+            if (root == label) {
+                continue;
+            }
+            area[root] += area[label];
+            left[root] = Math.min(left[root], left[label]);
+            top[root] = Math.min(top[root], top[label]);
+            right[root] = Math.max(right[root], right[label]);
+            bottom[root] = Math.max(bottom[root], bottom[label]);
+            sumX[root] += sumX[label];
+            sumY[root] += sumY[label];
+            min[root] = Math.min(min[root], min[label]);
+        }
+        for (int label = 1; label <= labels; label++) {
+            if (parent[label] == label && area[label] >= minArea) {
+                regions.add(area[label], left[label], top[label], right[label], bottom[label], sumX[label], sumY[label], min[label]);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.samples.thermalapp.detection;
+
+import java.util.Arrays;
+
+/**
+ * Connected condensation risk regions of one frame, the instance is owned by a {@link RegionLabeler} and overwritten on every frame.
+ * <p>
+ * Regions are numbered from 0 in the order their top left pixel appears in the frame. Bounds are inclusive pixel coordinates.
+ */
+public class RiskRegions {
+
+    int width;
+    int height;
+    int count;
+    int[] area = new int[0];
+    int[] left = new int[0];
+    int[] top = new int[0];
+    int[] right = new int[0];
+    int[] bottom = new int[0];
+    long[] sumX = new long[0];
+    long[] sumY = new long[0];
+    double[] min = new double[0];
+
+    void reset(int width, int height) {
+        this.width = width;
+        this.height = height;
+        count = 0;
+    }
+
+    /**
+     * Append a region, the arrays grow when needed
+     */
+    void add(int area, int left, int top, int right, int bottom, long sumX, long sumY, double min) {
+        if (count == this.area.length) {
+            int capacity = Math.max(16, count * 2);
+            this.area = Arrays.copyOf(this.area, capacity);
+            this.left = Arrays.copyOf(this.left, capacity);
+            this.top = Arrays.copyOf(this.top, capacity);
+            this.right = Arrays.copyOf(this.right, capacity);
+            this.bottom = Arrays.copyOf(this.bottom, capacity);
+            this.sumX = Arrays.copyOf(this.sumX, capacity);
+            this.sumY = Arrays.copyOf(this.sumY, capacity);
+            this.min = Arrays.copyOf(this.min, capacity);
+        }
+        this.area[count] = area;
+        this.left[count] = left;
+        this.top[count] = top;
+        this.right[count] = right;
+        this.bottom[count] = bottom;
+        this.sumX[count] = sumX;
+        this.sumY[count] = sumY;
+        this.min[count] = min;
+        count++;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Number of regions
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Number of pixels of the region
+     */
+    public int getArea(int region) {
+        return area[check(region)];
+    }
+
+    /**
+     * Share of the frame covered by the region, between 0 and 1
+     */
+    public double getAreaFraction(int region) {
+        return (double) getArea(region) / ((long) width * height);
+    }
+
+    public int getLeft(int region) {
+        return left[check(region)];
+    }
+
+    public int getTop(int region) {
+        return top[check(region)];
+    }
+
+    public int getRight(int region) {
+        return right[check(region)];
+    }
+
+    public int getBottom(int region) {
+        return bottom[check(region)];
+    }
+
+    public double getCentroidX(int region) {
+        return (double) sumX[check(region)] / area[region];
+    }
+
+    public double getCentroidY(int region) {
+        return (double) sumY[check(region)] / area[region];
+    }
+
+    /**
+     * Lowest value of the region, in the unit of the classified frame
+     */
+    public double getMin(int region) {
+        return min[check(region)];
+    }
+
+    /**
+     * The region with the largest area, -1 if there is none
+     */
+    public int getLargest() {
+        int largest = -1;
+        for (int i = 0; i < count; i++) {
+            if (largest < 0 || area[i] > area[largest]) {
+                largest = i;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Share of the frame covered by the largest region, 0 if there is none
+     */
+    public double getLargestFraction() {
+        int largest = getLargest();
+        return largest < 0 ? 0 : getAreaFraction(largest);
+    }
+
+    private int check(int region) {
+        if (region < 0 || region >= count) {
+            throw new IndexOutOfBoundsException("region " + region + ", count " + count);
+        }
+        return region;
+    }
+
+    @Override
+    public String toString() {
+        return "RiskRegions{" + count + " regions in " + width + "x" + height +
+                ", largest=" + String.format("%.1f%%", getLargestFraction() * 100) +
+                '}';
+    }
+}
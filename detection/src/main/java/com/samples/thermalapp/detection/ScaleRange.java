@@ -0,0 +1,55 @@
+package com.samples.thermalapp.detection;
+
+/**
+ * Minimum and maximum of a thermal frame, the range the palette is stretched over
+ */
+public class ScaleRange {
+
+    private float min;
+    private float max;
+
+    /**
+     * Find the range of the first {@code size} values of the frame
+     */
+    public ScaleRange compute(float[] frame, int size) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            float value = frame[i];
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+        this.min = min;
+        this.max = max;
+        return this;
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    /**
+     * Truncates a scale value to the 4 characters shown next to the palette, without going through a String
+     */
+    public static double truncateForDisplay(double value) {
+        double abs = Math.abs(value);
+        int chars = value < 0 ? 2 : 1;
+        for (double limit = 10; abs >= limit && chars < 4; limit *= 10) {
+            chars++;
+        }
+        //one character is taken by the decimal point
+        int decimals = Math.max(0, 3 - chars);
+        double factor = decimals == 2 ? 100 : decimals == 1 ? 10 : 1;
+        //the product can land just below a value that is exact in decimal, 0.29 * 100 is 28.999999999999996
+        double scaled = value * factor;
+        return (long) (scaled + Math.copySign(1e-9, scaled)) / factor;
+    }
+}
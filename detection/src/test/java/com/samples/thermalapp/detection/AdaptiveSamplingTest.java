@@ -0,0 +1,132 @@
+package com.samples.thermalapp.detection;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveSamplingTest {
+
+    private static final long BUDGET = 1000;
+    private static final long FAST = BUDGET / 10;
+    private static final long SLOW = BUDGET * 2;
+
+    @Test
+    public void startsAtTheFixedOverlayStride() {
+        AdaptiveSampling sampling = new AdaptiveSampling(BUDGET);
+
+        assertEquals(AdaptiveSampling.INITIAL_STRIDE, sampling.getStride());
+        assertEquals(1.0 / (9 * 9), sampling.getDensity(), 0);
+    }
+
+    @Test
+    public void goesCoarserOnceTheAverageIsOverBudget() {
+        AdaptiveSampling sampling = new AdaptiveSampling(BUDGET);
+        for (int i = 1; i < AdaptiveSampling.MIN_FRAMES; i++) {
+            assertEquals(9, sampling.record(SLOW));
+        }
+        assertEquals(12, sampling.record(SLOW));
+    }
+
+    @Test
+    public void goesFinerOnlyAfterTheHold() {
+        AdaptiveSampling sampling = new AdaptiveSampling(BUDGET);
+        for (int i = 1; i < AdaptiveSampling.MIN_HOLD_FRAMES; i++) {
+            assertEquals(9, sampling.record(FAST));
+        }
+        assertEquals(6, sampling.record(FAST));
+    }
+
+    @Test
+    public void staysBetweenHalfAndFullBudget() {
+        AdaptiveSampling sampling = new AdaptiveSampling(BUDGET);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(9, sampling.record(BUDGET * 3 / 4));
+        }
+    }
+
+    @Test
+    public void ignoresASingleSlowFrame() {
+        AdaptiveSampling sampling = new AdaptiveSampling(BUDGET);
+        for (int i = 0; i < 10; i++) {
+            sampling.record(BUDGET * 6 / 10);
+        }
+        //the moving average takes a quarter of the spike
+        assertEquals(9, sampling.record(BUDGET + BUDGET / 2));
+        assertEquals(9, sampling.record(BUDGET * 6 / 10));
+    }
+
+    @Test
+    public void failedFinerStrideDoublesTheHold() {
+        AdaptiveSampling sampling = new AdaptiveSampling(BUDGET);
+        recordUntilChange(sampling, FAST);
+        assertEquals(6, sampling.getStride());
+
+        //stride 6 does not fit, back to 9 right away
+        assertEquals(AdaptiveSampling.MIN_FRAMES, recordUntilChange(sampling, SLOW));
+        assertEquals(9, sampling.getStride());
+        //the next try waits twice as long
+        assertEquals(AdaptiveSampling.MIN_HOLD_FRAMES * 2, recordUntilChange(sampling, FAST));
+        assertEquals(6, sampling.getStride());
+        //and twice as long again when it fails once more
+        recordUntilChange(sampling, SLOW);
+        assertEquals(AdaptiveSampling.MIN_HOLD_FRAMES * 4, recordUntilChange(sampling, FAST));
+    }
+
+    @Test
+    public void holdIsCapped() {
+        AdaptiveSampling sampling = new AdaptiveSampling(BUDGET);
+        int frames = 0;
+        for (int i = 0; i < 20; i++) {
+            frames = recordUntilChange(sampling, FAST);
+            recordUntilChange(sampling, SLOW);
+        }
+        assertEquals(AdaptiveSampling.MAX_HOLD_FRAMES, frames);
+    }
+
+    @Test
+    public void staysWithinTheStrides() {
+        AdaptiveSampling sampling = new AdaptiveSampling(BUDGET);
+        for (int i = 0; i < 100; i++) {
+            sampling.record(Long.MAX_VALUE / 2);
+        }
+        assertEquals(18, sampling.getStride());
+
+        sampling.setBudget(BUDGET);
+        for (int i = 0; i < 1000; i++) {
+            sampling.record(0);
+        }
+        assertEquals(1, sampling.getStride());
+        assertEquals(1.0, sampling.getDensity(), 0);
+    }
+
+    @Test
+    public void resetStartsOver() {
+        AdaptiveSampling sampling = new AdaptiveSampling(BUDGET);
+        recordUntilChange(sampling, FAST);
+        recordUntilChange(sampling, SLOW);
+        sampling.reset();
+
+        assertEquals(9, sampling.getStride());
+        assertEquals(Double.NaN, sampling.getAverageNanos(), 0);
+        //the doubled hold is forgotten as well
+        assertEquals(AdaptiveSampling.MIN_HOLD_FRAMES, recordUntilChange(sampling, FAST));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANonPositiveBudget() {
+        new AdaptiveSampling(0);
+    }
+
+    /**
+     * @return the number of frames until the stride changed
+     */
+    private static int recordUntilChange(AdaptiveSampling sampling, long nanos) {
+        int stride = sampling.getStride();
+        for (int frames = 1; frames <= 10000; frames++) {
+            if (sampling.record(nanos) != stride) {
+                return frames;
+            }
+        }
+        throw new AssertionError("stride " + stride + " never changed");
+    }
+}
@@ -0,0 +1,290 @@
+package com.samples.thermalapp.detection;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CondensationDetectorTest {
+
+    //sizes around the band size, with heights that do not split evenly into bands
+    private static final int[][] SIZES = {{1, 1}, {7, 3}, {160, 120}, {320, 240}, {333, 97}, {16 * 1024 + 5, 3}};
+
+    private final ForkJoinPool pool = new ForkJoinPool(3);
+
+    @After
+    public void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void parallelFloatFrameMatchesSerial() {
+        Random random = new Random(1);
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+            float[] frame = floatFrame(random, width * height);
+            CondensationDetector serial = new CondensationDetector();
+            CondensationDetector parallel = parallelDetector();
+
+            DetectionStats expected = serial.detect(frame, width, height, 285f);
+            DetectionStats actual = parallel.detect(frame, width, height, 285f);
+
+            assertEquals(height > 1, parallel.isParallel(width, height));
+            assertSameResult(serial, parallel, width * height);
+            assertSameStats(expected, actual);
+        }
+    }
+
+    @Test
+    public void parallelRawFrameMatchesSerial() {
+        Random random = new Random(2);
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+            short[] frame = rawFrame(random, width * height);
+            CondensationDetector serial = new CondensationDetector();
+            CondensationDetector parallel = parallelDetector();
+
+            DetectionStats expected = serial.detect(frame, width, height, 28500);
+            DetectionStats actual = parallel.detect(frame, width, height, 28500);
+
+            assertSameResult(serial, parallel, width * height);
+            assertSameStats(expected, actual);
+        }
+    }
+
+    @Test
+    public void parallelDetectorIsReusedAcrossSizes() {
+        Random random = new Random(3);
+        CondensationDetector serial = new CondensationDetector();
+        CondensationDetector parallel = parallelDetector();
+        //the bands are kept between frames and rebuilt when the size changes
+        for (int i = 0; i < 3; i++) {
+            for (int[] size : SIZES) {
+                int pixels = size[0] * size[1];
+                short[] frame = rawFrame(random, pixels);
+                assertSameStats(serial.detect(frame, size[0], size[1], 29000), parallel.detect(frame, size[0], size[1], 29000));
+                assertSameResult(serial, parallel, pixels);
+            }
+        }
+    }
+
+    @Test
+    public void shutDownPoolFallsBackToSerial() {
+        Random random = new Random(4);
+        float[] frame = floatFrame(random, 320 * 240);
+        CondensationDetector serial = new CondensationDetector();
+        CondensationDetector parallel = parallelDetector();
+        pool.shutdown();
+
+        assertFalse(parallel.isParallel(320, 240));
+        assertSameStats(serial.detect(frame, 320, 240, 285f), parallel.detect(frame, 320, 240, 285f));
+        assertSameResult(serial, parallel, 320 * 240);
+    }
+
+    @Test
+    public void statisticsOfKnownFrame() {
+        float[] frame = {280f, 290f, 284.5f, 285f, 300f, 270f};
+        DetectionStats stats = new CondensationDetector().detect(frame, 3, 2, 285f);
+
+        assertEquals(6, stats.getClassifiedPixels());
+        assertEquals(3, stats.getRiskPixels());
+        assertEquals(0.5, stats.getRiskFraction(), 0);
+        assertEquals(270, stats.getMin(), 0);
+        assertEquals(300, stats.getMax(), 0);
+        assertEquals(1709.5 / 6, stats.getMean(), 1e-9);
+    }
+
+    @Test
+    public void bandStatisticsCoverTheirRows() {
+        Random random = new Random(27);
+        for (int stride : new int[]{1, 3, 9}) {
+            for (int[] size : SIZES) {
+                int width = size[0];
+                int height = size[1];
+                short[] frame = rawFrame(random, width * height);
+                CondensationDetector serial = new CondensationDetector();
+                serial.setSampleStride(stride);
+                CondensationDetector parallel = parallelDetector();
+                parallel.setSampleStride(stride);
+                DetectionStats stats = serial.detect(frame, width, height, 28500);
+                parallel.detect(frame, width, height, 28500);
+
+                int bandRows = Math.max(1, CondensationDetector.BAND_PIXELS / width);
+                assertEquals(bandRows, serial.getBandRows());
+                assertEquals((height + bandRows - 1) / bandRows, serial.getBandCount());
+                assertEquals(serial.getBandCount(), parallel.getBandCount());
+                int classified = 0;
+                int risk = 0;
+                for (int band = 0; band < serial.getBandCount(); band++) {
+                    int fromRow = band * bandRows;
+                    int toRow = Math.min(height, fromRow + bandRows);
+                    DetectionStats bandStats = serial.getBandStats(band);
+                    assertBand(frame, 28500, width, fromRow, toRow, stride, bandStats);
+                    assertSameStats(bandStats, parallel.getBandStats(band));
+                    classified += bandStats.getClassifiedPixels();
+                    risk += bandStats.getRiskPixels();
+                }
+                assertEquals(stats.getClassifiedPixels(), classified);
+                assertEquals(stats.getRiskPixels(), risk);
+            }
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void bandsOfTheLastFrameOnly() {
+        CondensationDetector detector = new CondensationDetector();
+        detector.detect(new float[320 * 240], 320, 240, 285f);
+        detector.detect(new float[7 * 3], 7, 3, 285f);
+
+        assertEquals(1, detector.getBandCount());
+        detector.getBandStats(1);
+    }
+
+    @Test
+    public void sampledMaskRepeatsTheSampledPixel() {
+        Random random = new Random(25);
+        for (int stride : new int[]{2, 3, 4, 6, 9, 12, 18}) {
+            for (int[] size : SIZES) {
+                int width = size[0];
+                int height = size[1];
+                float[] frame = floatFrame(random, width * height);
+                short[] raw = rawFrame(random, width * height);
+                CondensationDetector detector = parallelDetector();
+                detector.setSampleStride(stride);
+                assertFalse(detector.isParallel(width, height));
+
+                DetectionStats floatStats = detector.detect(frame, width, height, 285f);
+                assertSampled(frame, null, 285f, width, height, stride, detector.getMask(), floatStats);
+                DetectionStats rawStats = detector.detect(raw, width, height, 28500);
+                assertSampled(null, raw, 28500, width, height, stride, detector.getMask(), rawStats);
+            }
+        }
+    }
+
+    @Test
+    public void strideTakesEffectWithTheNextFrame() {
+        Random random = new Random(26);
+        short[] frame = rawFrame(random, 320 * 240);
+        CondensationDetector serial = new CondensationDetector();
+        CondensationDetector detector = new CondensationDetector();
+        detector.setSampleStride(9);
+        assertEquals(9, detector.getSampleStride());
+        DetectionStats sampled = detector.detect(frame, 320, 240, 28500);
+        assertEquals(36 * 27, sampled.getClassifiedPixels());
+        assertEquals(36 * 27 / (320.0 * 240), sampled.getDensity(), 1e-12);
+
+        //back to every pixel, nothing of the sampled frame is left over
+        detector.setSampleStride(1);
+        assertSameStats(serial.detect(frame, 320, 240, 28500), detector.detect(frame, 320, 240, 28500));
+        assertSameResult(serial, detector, 320 * 240);
+        assertEquals(1, detector.getStats().getDensity(), 0);
+    }
+
+    /**
+     * Reference: every pixel takes the class of the sampled pixel at the top left of its block, the statistics cover the
+     * sampled pixels only
+     */
+    private static void assertSampled(float[] frame, short[] raw, float threshold, int width, int height, int stride, byte[] mask,
+                                      DetectionStats stats) {
+        int classified = 0;
+        int risk = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int sample = (y - y % stride) * width + x - x % stride;
+                double value = frame != null ? frame[sample] : raw[sample] & 0xffff;
+                byte expected = value < threshold ? CondensationDetector.RISK : CondensationDetector.DRY;
+                assertEquals(expected, mask[y * width + x]);
+                if (sample == y * width + x) {
+                    classified++;
+                    risk += expected;
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+            }
+        }
+        assertEquals(classified, stats.getClassifiedPixels());
+        assertEquals(risk, stats.getRiskPixels());
+        assertEquals(min, stats.getMin(), 0);
+        assertEquals(max, stats.getMax(), 0);
+        assertEquals((double) classified / (width * height), stats.getDensity(), 1e-12);
+    }
+
+    /**
+     * Reference: the sampled pixels of the rows {@code fromRow} to {@code toRow}
+     */
+    private static void assertBand(short[] frame, int threshold, int width, int fromRow, int toRow, int stride, DetectionStats stats) {
+        int classified = 0;
+        int risk = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (int y = fromRow; y < toRow; y++) {
+            for (int x = 0; x < width; x++) {
+                if (y % stride == 0 && x % stride == 0) {
+                    int value = frame[y * width + x] & 0xffff;
+                    classified++;
+                    risk += value < threshold ? 1 : 0;
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                    sum += value;
+                }
+            }
+        }
+        assertEquals(width, stats.getWidth());
+        assertEquals(toRow - fromRow, stats.getHeight());
+        assertEquals(classified, stats.getClassifiedPixels());
+        assertEquals(risk, stats.getRiskPixels());
+        assertEquals(min, stats.getMin(), 0);
+        assertEquals(max, stats.getMax(), 0);
+        assertEquals(classified == 0 ? Double.NaN : sum / classified, stats.getMean(), 1e-9);
+    }
+
+    private CondensationDetector parallelDetector() {
+        CondensationDetector detector = new CondensationDetector();
+        detector.setParallelism(pool, 1);
+        return detector;
+    }
+
+    private static float[] floatFrame(Random random, int pixels) {
+        float[] frame = new float[pixels];
+        for (int i = 0; i < pixels; i++) {
+            frame[i] = 280 + random.nextFloat() * 10;
+        }
+        return frame;
+    }
+
+    private static short[] rawFrame(Random random, int pixels) {
+        short[] frame = new short[pixels];
+        for (int i = 0; i < pixels; i++) {
+            frame[i] = (short) (28000 + random.nextInt(1000));
+        }
+        return frame;
+    }
+
+    private static void assertSameResult(CondensationDetector expected, CondensationDetector actual, int pixels) {
+        assertArrayEquals(Arrays.copyOf(expected.getMask(), pixels), Arrays.copyOf(actual.getMask(), pixels));
+    }
+
+    static void assertSameStats(DetectionStats expected, DetectionStats actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertEquals(expected.getClassifiedPixels(), actual.getClassifiedPixels());
+        assertEquals(expected.getRiskPixels(), actual.getRiskPixels());
+        assertEquals(expected.getMin(), actual.getMin(), 0);
+        assertEquals(expected.getMax(), actual.getMax(), 0);
+        //rows are combined in row order, so even the float sum is the same
+        assertEquals(expected.getMean(), actual.getMean(), 0);
+        assertTrue(actual.getRiskPixels() <= actual.getClassifiedPixels());
+    }
+}
@@ -0,0 +1,147 @@
+package com.samples.thermalapp.detection;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalDetectorTest {
+
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 70;
+    private static final int THRESHOLD = 28500;
+
+    @Test
+    public void withoutChangeThresholdMatchesFullDetect() {
+        Random random = new Random(18);
+        short[] frame = randomFrame(random);
+        IncrementalDetector incremental = new IncrementalDetector(16, 0);
+        CondensationDetector full = new CondensationDetector();
+        for (int i = 0; i < 20; i++) {
+            //a few spots change per frame, the rest of the wall stays put
+            for (int spot = 0; spot < 5; spot++) {
+                frame[random.nextInt(frame.length)] = (short) (28000 + random.nextInt(1000));
+            }
+            DetectionStats expected = full.detect(frame, WIDTH, HEIGHT, THRESHOLD);
+            DetectionStats actual = incremental.detect(frame, WIDTH, HEIGHT, THRESHOLD);
+
+            assertArrayEquals(Arrays.copyOf(full.getMask(), WIDTH * HEIGHT), Arrays.copyOf(incremental.getMask(), WIDTH * HEIGHT));
+            CondensationDetectorTest.assertSameStats(expected, actual);
+            assertTrue(incremental.getChangedTiles() <= (i == 0 ? incremental.getTileCount() : 5));
+        }
+    }
+
+    @Test
+    public void onlyChangedTilesAreClassified() {
+        short[] frame = randomFrame(new Random(19));
+        IncrementalDetector incremental = new IncrementalDetector(16, 10);
+        incremental.detect(frame, WIDTH, HEIGHT, THRESHOLD);
+        //7x5 tiles, the last column and row are partial
+        assertEquals(35, incremental.getTileCount());
+        assertEquals(35, incremental.getChangedTiles());
+
+        incremental.detect(frame, WIDTH, HEIGHT, THRESHOLD);
+        assertEquals(0, incremental.getChangedTiles());
+        assertFalse(incremental.hasChanged());
+
+        //noise within the change threshold is ignored
+        frame[0] += 10;
+        incremental.detect(frame, WIDTH, HEIGHT, THRESHOLD);
+        assertEquals(0, incremental.getChangedTiles());
+
+        frame[WIDTH * HEIGHT - 1] += 11;
+        incremental.detect(frame, WIDTH, HEIGHT, THRESHOLD);
+        assertEquals(1, incremental.getChangedTiles());
+        assertTrue(incremental.hasChanged());
+    }
+
+    @Test
+    public void noiseKeepsTilesAndTheirMask() {
+        Random random = new Random(20);
+        short[] frame = randomFrame(random);
+        IncrementalDetector incremental = new IncrementalDetector(8, 10);
+        CondensationDetector full = new CondensationDetector();
+        incremental.detect(frame, WIDTH, HEIGHT, THRESHOLD);
+
+        //values that move by at most the change threshold keep the mask, larger changes reclassify
+        short[] next = frame.clone();
+        for (int i = 0; i < next.length; i++) {
+            next[i] += random.nextInt(21) - 10;
+        }
+        next[WIDTH * 35 + 50] = (short) (THRESHOLD - 500);
+        incremental.detect(next, WIDTH, HEIGHT, THRESHOLD);
+        full.detect(next, WIDTH, HEIGHT, THRESHOLD);
+
+        assertEquals(1, incremental.getChangedTiles());
+        //no value is close enough to the threshold for noise to flip it
+        assertArrayEquals(Arrays.copyOf(full.getMask(), WIDTH * HEIGHT), Arrays.copyOf(incremental.getMask(), WIDTH * HEIGHT));
+    }
+
+    @Test
+    public void slowDriftAcrossTheThresholdIsNoticed() {
+        short[] frame = randomFrame(new Random(23));
+        IncrementalDetector incremental = new IncrementalDetector(16, 10);
+        CondensationDetector full = new CondensationDetector();
+        int pixel = WIDTH * 40 + 40;
+        //a spot just above the dew point cools down by less than the change threshold in total
+        frame[pixel] = (short) (THRESHOLD + 5);
+        incremental.detect(frame, WIDTH, HEIGHT, THRESHOLD);
+        for (int i = 0; i < 10; i++) {
+            frame[pixel]--;
+            incremental.detect(frame, WIDTH, HEIGHT, THRESHOLD);
+            full.detect(frame, WIDTH, HEIGHT, THRESHOLD);
+
+            assertEquals(full.getMask()[pixel], incremental.getMask()[pixel]);
+            //only the tile next to the threshold is classified again
+            assertEquals(1, incremental.getChangedTiles());
+        }
+        assertEquals(CondensationDetector.RISK, incremental.getMask()[pixel]);
+        CondensationDetectorTest.assertSameStats(full.getStats(), incremental.getStats());
+    }
+
+    @Test
+    public void newChangeThresholdClassifiesEverything() {
+        short[] frame = randomFrame(new Random(24));
+        IncrementalDetector incremental = new IncrementalDetector(16, 10);
+        incremental.detect(frame, WIDTH, HEIGHT, THRESHOLD);
+
+        //which tiles are next to the threshold depends on the change threshold
+        incremental.setChangeThreshold(100);
+        incremental.detect(frame, WIDTH, HEIGHT, THRESHOLD);
+        assertEquals(incremental.getTileCount(), incremental.getChangedTiles());
+    }
+
+    @Test
+    public void newThresholdOrResetClassifiesEverything() {
+        short[] frame = randomFrame(new Random(21));
+        IncrementalDetector incremental = new IncrementalDetector();
+        CondensationDetector full = new CondensationDetector();
+        incremental.detect(frame, WIDTH, HEIGHT, THRESHOLD);
+
+        incremental.detect(frame, WIDTH, HEIGHT, THRESHOLD + 100);
+        full.detect(frame, WIDTH, HEIGHT, THRESHOLD + 100);
+        assertEquals(incremental.getTileCount(), incremental.getChangedTiles());
+        assertArrayEquals(Arrays.copyOf(full.getMask(), WIDTH * HEIGHT), Arrays.copyOf(incremental.getMask(), WIDTH * HEIGHT));
+
+        incremental.reset();
+        incremental.detect(frame, WIDTH, HEIGHT, THRESHOLD + 100);
+        assertEquals(incremental.getTileCount(), incremental.getChangedTiles());
+    }
+
+    /**
+     * Values on both sides of the threshold, but at least 20 away from it
+     */
+    private static short[] randomFrame(Random random) {
+        short[] frame = new short[WIDTH * HEIGHT];
+        for (int i = 0; i < frame.length; i++) {
+            int value = 28000 + random.nextInt(960);
+            frame[i] = (short) (value < THRESHOLD - 20 ? value : value + 40);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,153 @@
+package com.samples.thermalapp.detection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class RegionLabelerTest {
+
+    @Test
+    public void matchesFloodFillOnRandomMasks() {
+        Random random = new Random(17);
+        int[][] sizes = {{1, 1}, {1, 50}, {50, 1}, {17, 13}, {160, 120}};
+        double[] densities = {0.05, 0.3, 0.5, 0.7, 1};
+        RegionLabeler labeler = new RegionLabeler();
+        for (int[] size : sizes) {
+            for (double density : densities) {
+                for (int minArea : new int[]{1, RegionLabeler.DEFAULT_MIN_AREA}) {
+                    int width = size[0];
+                    int height = size[1];
+                    byte[] mask = randomMask(random, width * height, density);
+                    float[] frame = new float[width * height];
+                    for (int i = 0; i < frame.length; i++) {
+                        frame[i] = 270 + random.nextFloat() * 20;
+                    }
+                    labeler.setMinArea(minArea);
+
+                    RiskRegions regions = labeler.label(mask, frame, width, height);
+
+                    assertSameRegions(floodFill(mask, frame, width, height, minArea), regions);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void joinsDiagonalsAndUShapes() {
+        //a U merges two labels on its last row, the X is connected through its diagonals only
+        String[] rows = {
+                "#.#...#.#",
+                "#.#....#.",
+                "###...#.#",
+        };
+        int width = rows[0].length();
+        int height = rows.length;
+        byte[] mask = new byte[width * height];
+        short[] frame = new short[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                mask[y * width + x] = rows[y].charAt(x) == '#' ? CondensationDetector.RISK : CondensationDetector.DRY;
+                frame[y * width + x] = (short) (1000 + y * width + x);
+            }
+        }
+        RegionLabeler labeler = new RegionLabeler();
+        labeler.setMinArea(1);
+
+        RiskRegions regions = labeler.label(mask, frame, width, height);
+
+        assertEquals(2, regions.getCount());
+        assertEquals(7, regions.getArea(0));
+        assertEquals(0, regions.getLeft(0));
+        assertEquals(2, regions.getRight(0));
+        assertEquals(1000, regions.getMin(0), 0);
+        assertEquals(5, regions.getArea(1));
+        assertEquals(6, regions.getLeft(1));
+        assertEquals(8, regions.getRight(1));
+        assertEquals(7, regions.getCentroidX(1), 1e-9);
+        assertEquals(1, regions.getCentroidY(1), 1e-9);
+        assertEquals(0, regions.getLargest());
+    }
+
+    private static byte[] randomMask(Random random, int pixels, double density) {
+        byte[] mask = new byte[pixels];
+        for (int i = 0; i < pixels; i++) {
+            mask[i] = random.nextDouble() < density ? CondensationDetector.RISK : CondensationDetector.DRY;
+        }
+        return mask;
+    }
+
+    /**
+     * Reference: 8-connected flood fill from every unvisited risk pixel in scan order
+     */
+    private static List<double[]> floodFill(byte[] mask, float[] frame, int width, int height, int minArea) {
+        List<double[]> regions = new ArrayList<>();
+        boolean[] visited = new boolean[width * height];
+        int[] stack = new int[width * height];
+        for (int start = 0; start < width * height; start++) {
+            if (visited[start] || mask[start] != CondensationDetector.RISK) {
+                continue;
+            }
+            int area = 0;
+            int left = width;
+            int top = height;
+            int right = -1;
+            int bottom = -1;
+            long sumX = 0;
+            long sumY = 0;
+            double min = Double.POSITIVE_INFINITY;
+            int size = 0;
+            stack[size++] = start;
+            visited[start] = true;
+            while (size > 0) {
+                int pixel = stack[--size];
+                int x = pixel % width;
+                int y = pixel / width;
+                area++;
+                left = Math.min(left, x);
+                top = Math.min(top, y);
+                right = Math.max(right, x);
+                bottom = Math.max(bottom, y);
+                sumX += x;
+                sumY += y;
+                min = Math.min(min, frame[pixel]);
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int nx = x + dx;
+                        int ny = y + dy;
+                        if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+                            continue;
+                        }
+                        int neighbour = ny * width + nx;
+                        if (!visited[neighbour] && mask[neighbour] == CondensationDetector.RISK) {
+                            visited[neighbour] = true;
+                            stack[size++] = neighbour;
+                        }
+                    }
+                }
+            }
+            if (area >= minArea) {
+                regions.add(new double[]{area, left, top, right, bottom, (double) sumX / area, (double) sumY / area, min});
+            }
+        }
+        return regions;
+    }
+
+    private static void assertSameRegions(List<double[]> expected, RiskRegions actual) {
+        assertEquals(expected.size(), actual.getCount());
+        for (int i = 0; i < expected.size(); i++) {
+            double[] region = expected.get(i);
+            assertEquals((int) region[0], actual.getArea(i));
+            assertEquals((int) region[1], actual.getLeft(i));
+            assertEquals((int) region[2], actual.getTop(i));
+            assertEquals((int) region[3], actual.getRight(i));
+            assertEquals((int) region[4], actual.getBottom(i));
+            assertEquals(region[5], actual.getCentroidX(i), 1e-9);
+            assertEquals(region[6], actual.getCentroidY(i), 1e-9);
+            assertEquals(region[7], actual.getMin(i), 0);
+        }
+    }
+}
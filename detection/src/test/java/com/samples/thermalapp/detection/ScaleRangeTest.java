@@ -0,0 +1,41 @@
+package com.samples.thermalapp.detection;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScaleRangeTest {
+
+    @Test
+    public void truncatesLikeTheFirstFourCharacters() {
+        Random random = new Random(4);
+        for (int i = 0; i < 100000; i++) {
+            //scale values as the SDK reports them, Celsius with up to two decimals
+            double value = Math.round((random.nextDouble() * 1100 - 100) * 100) / 100.0;
+            String text = String.valueOf(value);
+            if (text.length() < 4) {
+                continue;
+            }
+            assertEquals(text, Double.parseDouble(text.substring(0, 4)), ScaleRange.truncateForDisplay(value), 0);
+        }
+    }
+
+    @Test
+    public void keepsDecimalsThatAreExactInDecimal() {
+        assertEquals(0.29, ScaleRange.truncateForDisplay(0.29), 0);
+        assertEquals(0.57, ScaleRange.truncateForDisplay(0.57), 0);
+        assertEquals(-1.1, ScaleRange.truncateForDisplay(-1.15), 0);
+        assertEquals(23.4, ScaleRange.truncateForDisplay(23.49), 0);
+        assertEquals(123, ScaleRange.truncateForDisplay(123.9), 0);
+        assertEquals(1234, ScaleRange.truncateForDisplay(1234.5), 0);
+    }
+
+    @Test
+    public void computesRangeOfFirstValues() {
+        ScaleRange range = new ScaleRange().compute(new float[]{290, 280.5f, 301, 250}, 3);
+        assertEquals(280.5f, range.getMin(), 0);
+        assertEquals(301, range.getMax(), 0);
+    }
+}
@@ -0,0 +1,125 @@
+package com.samples.thermalapp.recording;
+
+import com.samples.thermalapp.detection.AmbientConditions;
+import com.samples.thermalapp.detection.RadiometricScale;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Summarises frames into {@link RecordingIndex} entries, kept in memory until the index is written
+ */
+class IndexBuilder {
+
+    //an hour at 9 fps is about 1.5 MB
+    private ByteBuffer entries = newBuffer(1024);
+
+    //the dew point threshold of the last frame, most frames share their scale and conditions
+    private RadiometricScale thresholdScale;
+    private AmbientConditions thresholdConditions;
+    private int threshold;
+
+    /**
+     * Summarise a frame
+     *
+     * @param position    position of the record in the recording
+     * @param keyPosition position of the key frame the record decodes from
+     */
+    void add(long timestampMillis, long position, long keyPosition, short[] frame, int pixels, RadiometricScale scale, AmbientConditions conditions) {
+        add(timestampMillis, position, keyPosition, ShortBuffer.wrap(frame), 0, pixels, scale, conditions);
+    }
+
+    /**
+     * Summarise a frame that starts at {@code offset} of {@code values}, eg an uncompressed record in a mapped chunk
+     */
+    void add(long timestampMillis, long position, long keyPosition, ShortBuffer values, int offset, int pixels, RadiometricScale scale,
+             AmbientConditions conditions) {
+        if (scale != thresholdScale || conditions != thresholdConditions) {
+            threshold = scale.toRawThreshold(conditions.getDewPointKelvin());
+            thresholdScale = scale;
+            thresholdConditions = conditions;
+        }
+        int threshold = this.threshold;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        long sum = 0;
+        int riskPixels = 0;
+        for (int i = offset, end = offset + pixels; i < end; i++) {
+            int value = values.get(i) & 0xffff;
+            if (value < threshold) {
+                riskPixels++;
+            }
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+            sum += value;
+        }
+
+        if (entries.remaining() < RecordingFormat.INDEX_ENTRY_SIZE) {
+            ByteBuffer grown = newBuffer(entries.capacity() / RecordingFormat.INDEX_ENTRY_SIZE * 2);
+            entries.flip();
+            grown.put(entries);
+            entries = grown;
+        }
+        entries.putLong(timestampMillis)
+                .putLong(position)
+                .putLong(keyPosition)
+                .putFloat((float) scale.toTemperature(min))
+                .putFloat((float) scale.toTemperature(max))
+                .putFloat((float) (scale.getGain() * sum / pixels + scale.getOffset()))
+                .putFloat((float) riskPixels / pixels)
+                .putFloat((float) conditions.getDewPointKelvin())
+                .putInt(riskPixels);
+    }
+
+    /**
+     * Number of frames summarised
+     */
+    int size() {
+        return entries.position() / RecordingFormat.INDEX_ENTRY_SIZE;
+    }
+
+    /**
+     * The entries written so far, read only and little endian
+     */
+    ByteBuffer getEntries() {
+        ByteBuffer view = entries.duplicate();
+        view.flip();
+        return view.slice().asReadOnlyBuffer().order(RecordingFormat.BYTE_ORDER);
+    }
+
+    /**
+     * Write the index file
+     */
+    void write(File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RecordingFormat.INDEX_HEADER_SIZE).order(RecordingFormat.BYTE_ORDER);
+        header.putInt(RecordingFormat.INDEX_MAGIC)
+                .putInt(RecordingFormat.INDEX_VERSION)
+                .putInt(RecordingFormat.INDEX_HEADER_SIZE)
+                .putInt(RecordingFormat.INDEX_ENTRY_SIZE);
+        header.flip();
+        ByteBuffer data = entries.duplicate();
+        data.flip();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            FileChannel channel = out.getChannel();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(false);
+        }
+    }
+
+    private static ByteBuffer newBuffer(int entries) {
+        return ByteBuffer.allocate(entries * RecordingFormat.INDEX_ENTRY_SIZE).order(RecordingFormat.BYTE_ORDER);
+    }
+}
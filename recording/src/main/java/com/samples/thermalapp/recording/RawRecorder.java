@@ -0,0 +1,423 @@
+package com.samples.thermalapp.recording;
+
+import com.samples.thermalapp.detection.AmbientConditions;
+import com.samples.thermalapp.detection.RadiometricScale;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Appends thermal frames and their metadata to a memory mapped file, see {@link RecordingFormat} for the layout.
+ * <p>
+ * Uncompressed, {@link #append} copies the frame straight from the caller's array into the mapped file, there is no
+ * intermediate buffer and no system call on the calling thread. Mapping the next chunk and flushing full chunks happen
+ * on the recorder's own thread, one chunk ahead.
+ * <p>
+ * Compressed with {@link ThermalCodec}, {@link #append} only copies the frame into one of a few pooled buffers and the
+ * recorder's thread encodes and writes it, a key frame every {@code keyFrameInterval} frames and deltas in between.
+ * <p>
+ * Either way the caller never waits: if the recorder's thread falls behind, the frame is dropped from the recording and
+ * counted, see {@link #getDroppedFrames()}. Every recorded frame is also summarised on the recorder's thread for the
+ * {@link RecordingIndex} that is written next to the recording on {@link #close()}. {@link #append} is meant to be called from one thread, eg the camera thread,
+ * {@link #close()} may be called from any thread.
+ */
+public class RawRecorder implements Closeable {
+
+    //frames waiting to be encoded, a few frames of slack for the encoder
+    private static final int ENCODE_QUEUE = 4;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final int chunkSize;
+    private final int keyFrameInterval;
+    //maps the next chunk and flushes full ones, and encodes when compressing
+    private final ExecutorService mapper = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RawRecorder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicReference<MappedByteBuffer> nextChunk = new AtomicReference<>();
+    private volatile IOException mapperError;
+
+    //the first chunk holds the file header that is completed on close, guarded by this like the current chunk
+    private final MappedByteBuffer header;
+    private MappedByteBuffer chunk;
+    //16 bit view of the whole current chunk, uncompressed frames are copied through it
+    private ShortBuffer chunkValues;
+    private long chunkStart = 0;
+    private volatile boolean closed = false;
+
+    //compression: buffers handed from the caller to the recorder's thread
+    private final ArrayBlockingQueue<short[]> freeFrames = new ArrayBlockingQueue<>(ENCODE_QUEUE);
+    private int allocatedFrames = 0;
+    //only used on the recorder's thread
+    private short[] previous;
+    private int previousWidth;
+    private int previousHeight;
+    private int framesSinceKey;
+    private byte[] encoded = new byte[0];
+    private long keyPosition;
+
+    //summaries of the recorded frames, only used on the recorder's thread and by close() once that has ended
+    private final IndexBuilder index = new IndexBuilder();
+
+    private volatile long frames = 0;
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private volatile long dataEnd = RecordingFormat.FILE_HEADER_SIZE;
+
+    /**
+     * An uncompressed recording
+     */
+    public RawRecorder(File file) throws IOException {
+        this(file, RecordingFormat.DEFAULT_CHUNK_SIZE, 0);
+    }
+
+    /**
+     * @param keyFrameInterval compress with a key frame every that many frames, 0 for an uncompressed recording
+     */
+    public RawRecorder(File file, int chunkSize, int keyFrameInterval) throws IOException {
+        if (chunkSize < RecordingFormat.FILE_HEADER_SIZE + RecordingFormat.RECORD_HEADER_SIZE || chunkSize % 8 != 0) {
+            throw new IllegalArgumentException("invalid chunk size " + chunkSize);
+        }
+        if (keyFrameInterval < 0) {
+            throw new IllegalArgumentException("keyFrameInterval must not be negative, was " + keyFrameInterval);
+        }
+        this.file = file;
+        this.chunkSize = chunkSize;
+        this.keyFrameInterval = keyFrameInterval;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(0);
+            channel = randomAccessFile.getChannel();
+            header = map(0);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+        header.putInt(RecordingFormat.FILE_MAGIC)
+                .putInt(RecordingFormat.VERSION)
+                .putInt(RecordingFormat.FILE_HEADER_SIZE)
+                .putInt(chunkSize)
+                .putLong(System.currentTimeMillis())
+                .putLong(0)
+                .putLong(0);
+        header.position(RecordingFormat.FILE_HEADER_SIZE);
+        chunk = header;
+        chunkValues = valuesOf(header);
+        if (!isCompressed()) {
+            prepareChunk(chunkSize);
+        }
+    }
+
+    public boolean isCompressed() {
+        return keyFrameInterval > 0;
+    }
+
+    /**
+     * Append a frame, never blocks on I/O
+     *
+     * @param timestampMillis when the frame was taken, milliseconds since the epoch
+     * @param frame           unsigned 16 bit values, {@code width * height} of them are written
+     * @param scale           maps the values to Kelvin
+     * @param conditions      room conditions the frame was classified against
+     * @return false if the frame was dropped, because the recorder is closed or behind
+     */
+    public boolean append(long timestampMillis, short[] frame, int width, int height, RadiometricScale scale, AmbientConditions conditions) {
+        int pixels = width * height;
+        if (width <= 0 || height <= 0 || frame.length < pixels) {
+            throw new IllegalArgumentException("invalid frame " + width + "x" + height + " with " + frame.length + " values");
+        }
+        if (!isCompressed()) {
+            return appendRaw(timestampMillis, frame, width, height, scale, conditions);
+        }
+        short[] copy = closed ? null : freeFrames.poll();
+        if (copy == null && !closed && allocatedFrames < ENCODE_QUEUE) {
+            copy = new short[pixels];
+            allocatedFrames++;
+        }
+        if (copy == null) {
+            droppedFrames.incrementAndGet();
+            return false;
+        }
+        if (copy.length < pixels) {
+            copy = new short[pixels];
+        }
+        System.arraycopy(frame, 0, copy, 0, pixels);
+        short[] queued = copy;
+        try {
+            mapper.execute(() -> encode(timestampMillis, queued, width, height, scale, conditions));
+        } catch (RejectedExecutionException e) {
+            //closed meanwhile
+            droppedFrames.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Complete the file header, flush everything to disk, cut the file to the recorded data and write the index.
+     * Frames that are still waiting to be encoded are written first
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        mapper.shutdown();
+        //the recorder's thread must be done with the mapped chunks before the file is cut, writing past the end is a SIGBUS
+        boolean interrupted = false;
+        while (!mapper.isTerminated()) {
+            try {
+                mapper.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                if (chunk.remaining() >= 4) {
+                    chunk.putInt(chunk.position(), 0);
+                }
+                header.putLong(RecordingFormat.FILE_FRAME_COUNT_OFFSET, frames);
+                header.putLong(RecordingFormat.FILE_DATA_END_OFFSET, dataEnd);
+                chunk.force();
+                header.force();
+                channel.truncate(dataEnd);
+            } finally {
+                randomAccessFile.close();
+            }
+            //the recording is complete without it, RecordingIndex.open rebuilds a missing index
+            index.write(RecordingFormat.indexFile(file));
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Number of frames in the recording
+     */
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Number of frames that were not recorded, because the recorder's thread was behind or the recorder was closed
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * Size of the recording in bytes
+     */
+    public long getSize() {
+        return dataEnd;
+    }
+
+    /**
+     * The error that stopped the recording, null if there was none
+     */
+    public IOException getError() {
+        return mapperError;
+    }
+
+    private synchronized boolean appendRaw(long timestampMillis, short[] frame, int width, int height, RadiometricScale scale, AmbientConditions conditions) {
+        int pixels = width * height;
+        int payloadSize = pixels * 2;
+        int recordSize = RecordingFormat.recordSize(payloadSize);
+        if (closed || recordSize > chunkSize - RecordingFormat.FILE_HEADER_SIZE) {
+            droppedFrames.incrementAndGet();
+            return false;
+        }
+        if (chunk.remaining() < recordSize && !nextPreparedChunk()) {
+            droppedFrames.incrementAndGet();
+            return false;
+        }
+
+        MappedByteBuffer chunk = this.chunk;
+        int start = chunk.position();
+        putHeader(chunk, recordSize, timestampMillis, width, height, RecordingFormat.ENCODING_RAW16, payloadSize, scale, conditions);
+        //the only copy of the frame, straight into the page cache
+        chunkValues.position((start + RecordingFormat.RECORD_HEADER_SIZE) / 2);
+        chunkValues.put(frame, 0, pixels);
+        chunk.position(start + recordSize);
+        //the summary reads the frame back from the chunk, the pixel pass stays off the calling thread
+        ShortBuffer values = chunkValues;
+        int offset = (start + RecordingFormat.RECORD_HEADER_SIZE) / 2;
+        long position = chunkStart + start;
+        mapper.execute(() -> index.add(timestampMillis, position, position, values, offset, pixels, scale, conditions));
+
+        frames++;
+        dataEnd = chunkStart + chunk.position();
+        return true;
+    }
+
+    /**
+     * Encode and write a frame, runs on the recorder's thread
+     */
+    private void encode(long timestampMillis, short[] frame, int width, int height, RadiometricScale scale, AmbientConditions conditions) {
+        int pixels = width * height;
+        boolean key = previous == null || previousWidth != width || previousHeight != height || framesSinceKey >= keyFrameInterval;
+        int maxSize = ThermalCodec.maxEncodedSize(pixels);
+        if (encoded.length < maxSize) {
+            encoded = new byte[maxSize];
+        }
+        int payloadSize = key
+                ? ThermalCodec.encodeKey(frame, width, height, encoded, 0)
+                : ThermalCodec.encodeDelta(frame, previous, pixels, encoded, 0);
+        int recordSize = RecordingFormat.recordSize(payloadSize);
+
+        boolean written = false;
+        long position = 0;
+        synchronized (this) {
+            try {
+                if (recordSize <= chunkSize - RecordingFormat.FILE_HEADER_SIZE
+                        && (chunk.remaining() >= recordSize || nextMappedChunk())) {
+                    MappedByteBuffer chunk = this.chunk;
+                    int start = chunk.position();
+                    putHeader(chunk, recordSize, timestampMillis, width, height,
+                            key ? RecordingFormat.ENCODING_KEY : RecordingFormat.ENCODING_DELTA, payloadSize, scale, conditions);
+                    chunk.put(encoded, 0, payloadSize);
+                    chunk.position(start + recordSize);
+                    position = chunkStart + start;
+                    if (key) {
+                        keyPosition = position;
+                    }
+                    frames++;
+                    dataEnd = chunkStart + chunk.position();
+                    written = true;
+                }
+            } catch (IOException e) {
+                mapperError = e;
+            }
+        }
+
+        if (written) {
+            index.add(timestampMillis, position, keyPosition, frame, pixels, scale, conditions);
+            framesSinceKey = key ? 1 : framesSinceKey + 1;
+            //the frame is the reference of the next delta, the old reference goes back to the pool
+            short[] old = previous;
+            previous = frame;
+            previousWidth = width;
+            previousHeight = height;
+            if (old != null) {
+                freeFrames.offer(old);
+            }
+        } else {
+            droppedFrames.incrementAndGet();
+            //the next frame must not be a delta to a frame that is not in the file
+            if (previous != null) {
+                freeFrames.offer(previous);
+                previous = null;
+            }
+            freeFrames.offer(frame);
+        }
+    }
+
+    private static void putHeader(MappedByteBuffer chunk, int recordSize, long timestampMillis, int width, int height, int encoding,
+                                  int payloadSize, RadiometricScale scale, AmbientConditions conditions) {
+        chunk.putInt(RecordingFormat.RECORD_MAGIC)
+                .putInt(recordSize)
+                .putLong(timestampMillis)
+                .putInt(width)
+                .putInt(height)
+                .putInt(encoding)
+                .putInt(payloadSize)
+                .putDouble(scale.getGain())
+                .putDouble(scale.getOffset())
+                .putDouble(conditions.getTemperature())
+                .putDouble(conditions.getHumidity())
+                .putDouble(conditions.getDewPoint())
+                .putLong(conditions.getTimestampMillis())
+                .putInt(conditions.getSource().ordinal())
+                .putInt(0);
+    }
+
+    /**
+     * Switch to the chunk mapped in the background and start mapping the one after it, uncompressed recordings
+     *
+     * @return false if the next chunk is not mapped yet
+     */
+    private boolean nextPreparedChunk() {
+        MappedByteBuffer next = nextChunk.getAndSet(null);
+        if (next == null) {
+            return false;
+        }
+        MappedByteBuffer full = switchChunk(next);
+        mapper.execute(full::force);
+        prepareChunk(chunkStart + chunkSize);
+        return true;
+    }
+
+    /**
+     * Map the next chunk and switch to it, compressed recordings on the recorder's thread
+     */
+    private boolean nextMappedChunk() throws IOException {
+        MappedByteBuffer full = switchChunk(map(chunkStart + chunkSize));
+        full.force();
+        return true;
+    }
+
+    /**
+     * @return the full chunk
+     */
+    private MappedByteBuffer switchChunk(MappedByteBuffer next) {
+        MappedByteBuffer full = chunk;
+        if (full.remaining() >= 4) {
+            //the reader skips to the next chunk
+            full.putInt(full.position(), 0);
+        }
+        chunk = next;
+        chunkValues = valuesOf(next);
+        chunkStart += chunkSize;
+        return full;
+    }
+
+    private static ShortBuffer valuesOf(MappedByteBuffer chunk) {
+        //a duplicate does not keep the byte order
+        ByteBuffer whole = chunk.duplicate().order(RecordingFormat.BYTE_ORDER);
+        whole.position(0);
+        return whole.asShortBuffer();
+    }
+
+    private void prepareChunk(long position) {
+        mapper.execute(() -> {
+            try {
+                MappedByteBuffer buffer = map(position);
+                //fault the pages in here rather than on the camera thread
+                buffer.load();
+                nextChunk.set(buffer);
+            } catch (IOException e) {
+                mapperError = e;
+            }
+        });
+    }
+
+    private MappedByteBuffer map(long position) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, chunkSize);
+        buffer.order(RecordingFormat.BYTE_ORDER);
+        return buffer;
+    }
+}
@@ -0,0 +1,61 @@
+package com.samples.thermalapp.recording;
+
+import com.samples.thermalapp.detection.AmbientConditions;
+import com.samples.thermalapp.detection.RadiometricScale;
+
+/**
+ * One frame read from a recording, the instance and its value array are reused by {@link RecordingReader#next(RecordedFrame)}
+ */
+public class RecordedFrame {
+
+    long timestampMillis;
+    int width;
+    int height;
+    short[] raw = new short[0];
+    RadiometricScale scale;
+    AmbientConditions conditions;
+    //position of the record in the file
+    long position;
+    //position of the key frame the record was decoded from, the record's own if it does not depend on another
+    long keyPosition;
+
+    /**
+     * When the frame was taken, milliseconds since the epoch
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Unsigned 16 bit values, row major. Only the first {@code width * height} values belong to the frame
+     */
+    public short[] getRaw() {
+        return raw;
+    }
+
+    /**
+     * Maps the raw values to Kelvin
+     */
+    public RadiometricScale getScale() {
+        return scale;
+    }
+
+    /**
+     * Room conditions the frame was classified against when it was recorded
+     */
+    public AmbientConditions getConditions() {
+        return conditions;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+}
@@ -0,0 +1,104 @@
+package com.samples.thermalapp.recording;
+
+import java.io.File;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of a raw thermal recording file.
+ * <p>
+ * All values are little endian. The file starts with a {@link #FILE_HEADER_SIZE} byte header followed by frame records.
+ * The file is written in chunks of {@code chunkSize} bytes and a record never crosses a chunk boundary: when a record
+ * does not fit, the rest of the chunk is skipped, marked with a 0 in place of the next record magic if there is room.
+ * A record is a {@link #RECORD_HEADER_SIZE} byte header, the payload and padding up to a multiple of 8 bytes.
+ * <pre>
+ * file header                      record header
+ *  0 int    FILE_MAGIC              0 int    RECORD_MAGIC
+ *  4 int    VERSION                 4 int    record size, header + payload + padding
+ *  8 int    FILE_HEADER_SIZE        8 long   timestamp, milliseconds since the epoch
+ * 12 int    chunk size             16 int    width
+ * 16 long   created, epoch millis  20 int    height
+ * 24 long   frame count *          24 int    encoding, ENCODING_*
+ * 32 long   end of data *          28 int    payload size in bytes
+ *                                  32 double scale gain, raw to Kelvin
+ *  * written when the recording    40 double scale offset
+ *    is closed, 0 while recording  48 double ambient temperature, Celsius
+ *                                  56 double humidity, percent
+ *                                  64 double dew point, Celsius
+ *                                  72 long   conditions timestamp, epoch millis
+ *                                  80 int    conditions source, AmbientConditions.Source ordinal
+ *                                  84 int    reserved
+ * </pre>
+ * Next to a recording the recorder writes an index, the same name with {@link #INDEX_EXTENSION}: a {@link #INDEX_HEADER_SIZE}
+ * byte header and a fixed size summary of every frame in recording order, so frames can be found without reading them.
+ * <pre>
+ * index header                     index entry
+ *  0 int    INDEX_MAGIC             0 long   timestamp, milliseconds since the epoch
+ *  4 int    INDEX_VERSION           8 long   position of the record in the recording
+ *  8 int    INDEX_HEADER_SIZE      16 long   position of the key frame the record decodes from, its own for key and raw frames
+ * 12 int    INDEX_ENTRY_SIZE       24 float  lowest value, Kelvin
+ *                                  28 float  highest value, Kelvin
+ *                                  32 float  mean value, Kelvin
+ *                                  36 float  share of the pixels below the dew point, 0 to 1
+ *                                  40 float  dew point, Kelvin like the temperatures
+ *                                  44 int    pixels below the dew point
+ * </pre>
+ */
+public final class RecordingFormat {
+
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    //"TREC" and "FRAM" read as little endian ints
+    public static final int FILE_MAGIC = 0x43455254;
+    public static final int RECORD_MAGIC = 0x4d415246;
+    //"TIDX"
+    public static final int INDEX_MAGIC = 0x58444954;
+    public static final int VERSION = 1;
+    public static final int INDEX_VERSION = 1;
+
+    public static final int FILE_HEADER_SIZE = 64;
+    public static final int RECORD_HEADER_SIZE = 88;
+    public static final int INDEX_HEADER_SIZE = 16;
+    public static final int INDEX_ENTRY_SIZE = 48;
+
+    //unsigned 16 bit values, row major
+    public static final int ENCODING_RAW16 = 0;
+    //ThermalCodec key frame, decodes on its own
+    public static final int ENCODING_KEY = 1;
+    //ThermalCodec delta frame, needs the frame before it
+    public static final int ENCODING_DELTA = 2;
+
+    //a compressed recording starts a key frame every 64 frames, about 7 s at 9 fps
+    public static final int DEFAULT_KEY_FRAME_INTERVAL = 64;
+
+    //32 MB, about 50 s of 640x480 or 14 min of 160x120 at 9 fps
+    public static final int DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+
+    public static final String FILE_EXTENSION = ".trec";
+    public static final String INDEX_EXTENSION = ".tidx";
+
+    static final int FILE_CHUNK_SIZE_OFFSET = 12;
+    static final int FILE_CREATED_OFFSET = 16;
+    static final int FILE_FRAME_COUNT_OFFSET = 24;
+    static final int FILE_DATA_END_OFFSET = 32;
+
+    private RecordingFormat() {
+    }
+
+    /**
+     * The index file of a recording
+     */
+    public static File indexFile(File recording) {
+        String name = recording.getName();
+        if (name.endsWith(FILE_EXTENSION)) {
+            name = name.substring(0, name.length() - FILE_EXTENSION.length());
+        }
+        return new File(recording.getParentFile(), name + INDEX_EXTENSION);
+    }
+
+    /**
+     * Size of a record with the given payload, padded to a multiple of 8 bytes
+     */
+    public static int recordSize(int payloadSize) {
+        return (RECORD_HEADER_SIZE + payloadSize + 7) & ~7;
+    }
+}
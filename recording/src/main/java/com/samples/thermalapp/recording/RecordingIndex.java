@@ -0,0 +1,305 @@
+package com.samples.thermalapp.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The summary of every frame of a recording: timestamp, lowest, highest and mean temperature, how much of the frame is below
+ * the dew point and where the record is in the file, see {@link RecordingFormat} for the layout.
+ * <p>
+ * Entries are fixed size and in recording order, so frames are found by timestamp with a binary search and filtered on
+ * their risk without reading a single frame. Use {@link RecordingReader#seek(RecordingIndex, int)} to read a frame found.
+ * An index is read only and can be used from any thread.
+ */
+public class RecordingIndex {
+
+    //0 long timestamp, 8 long position, 16 long key position, 24 float min, 28 float max, 32 float mean,
+    //36 float risk fraction, 40 float dew point, 44 int risk pixels
+    private static final int POSITION = 8;
+    private static final int KEY_POSITION = 16;
+    private static final int MIN = 24;
+    private static final int MAX = 28;
+    private static final int MEAN = 32;
+    private static final int RISK_FRACTION = 36;
+    private static final int DEW_POINT_KELVIN = 40;
+    private static final int RISK_PIXELS = 44;
+
+    private final ByteBuffer entries;
+    private final int size;
+
+    RecordingIndex(ByteBuffer entries) {
+        this.entries = entries.order(RecordingFormat.BYTE_ORDER);
+        this.size = entries.limit() / RecordingFormat.INDEX_ENTRY_SIZE;
+    }
+
+    /**
+     * The index of a recording, read from the index file next to it. The index is rebuilt from the recording if there is
+     * no index file or it does not match, eg because the recording was not closed, and written for the next time if possible
+     */
+    public static RecordingIndex open(File recording) throws IOException {
+        long frameCount;
+        try (RecordingReader reader = new RecordingReader(recording)) {
+            frameCount = reader.getFrameCount();
+        }
+        File file = RecordingFormat.indexFile(recording);
+        if (frameCount > 0 && file.isFile()) {
+            try {
+                RecordingIndex index = read(file);
+                if (index.size() == frameCount) {
+                    return index;
+                }
+            } catch (IOException e) {
+                //eg written by an older version, the recording itself is still readable
+            }
+        }
+        return build(recording);
+    }
+
+    /**
+     * Read an index file
+     */
+    public static RecordingIndex read(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            long length = channel.size();
+            if (length < RecordingFormat.INDEX_HEADER_SIZE) {
+                throw new IOException(file + " is not a recording index, too short");
+            }
+            //the mapping stays valid after the file is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(RecordingFormat.BYTE_ORDER);
+            if (buffer.getInt(0) != RecordingFormat.INDEX_MAGIC) {
+                throw new IOException(file + " is not a recording index");
+            }
+            if (buffer.getInt(4) != RecordingFormat.INDEX_VERSION || buffer.getInt(12) != RecordingFormat.INDEX_ENTRY_SIZE) {
+                throw new IOException(file + " has unsupported version " + buffer.getInt(4));
+            }
+            int headerSize = buffer.getInt(8);
+            if (headerSize < RecordingFormat.INDEX_HEADER_SIZE || headerSize > length) {
+                throw new IOException(file + " has an invalid header size " + headerSize);
+            }
+            //an entry cut off by a crash is ignored
+            long entries = (length - headerSize) / RecordingFormat.INDEX_ENTRY_SIZE;
+            buffer.position(headerSize);
+            buffer.limit((int) (headerSize + entries * RecordingFormat.INDEX_ENTRY_SIZE));
+            return new RecordingIndex(buffer.slice());
+        }
+    }
+
+    /**
+     * Build the index by reading every frame of a recording, and write the index file next to it if possible
+     */
+    public static RecordingIndex build(File recording) throws IOException {
+        IndexBuilder builder = new IndexBuilder();
+        try (RecordingReader reader = new RecordingReader(recording)) {
+            RecordedFrame frame = new RecordedFrame();
+            while (reader.next(frame)) {
+                builder.add(frame.timestampMillis, frame.position, frame.keyPosition, frame.raw, frame.width * frame.height,
+                        frame.scale, frame.conditions);
+            }
+        }
+        try {
+            builder.write(RecordingFormat.indexFile(recording));
+        } catch (IOException e) {
+            //read only storage, the index still works from memory
+        }
+        return new RecordingIndex(builder.getEntries());
+    }
+
+    /**
+     * Number of frames
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * When the frame was taken, milliseconds since the epoch
+     */
+    public long getTimestampMillis(int frame) {
+        return entries.getLong(offset(frame));
+    }
+
+    /**
+     * Position of the frame's record in the recording
+     */
+    public long getPosition(int frame) {
+        return entries.getLong(offset(frame) + POSITION);
+    }
+
+    /**
+     * Position of the key frame the frame is decoded from, the frame's own position if it does not depend on another frame
+     */
+    public long getKeyPosition(int frame) {
+        return entries.getLong(offset(frame) + KEY_POSITION);
+    }
+
+    /**
+     * Lowest temperature of the frame, Kelvin
+     */
+    public float getMin(int frame) {
+        return entries.getFloat(offset(frame) + MIN);
+    }
+
+    /**
+     * Highest temperature of the frame, Kelvin
+     */
+    public float getMax(int frame) {
+        return entries.getFloat(offset(frame) + MAX);
+    }
+
+    /**
+     * Mean temperature of the frame, Kelvin
+     */
+    public float getMean(int frame) {
+        return entries.getFloat(offset(frame) + MEAN);
+    }
+
+    /**
+     * Share of the pixels below the dew point, between 0 and 1
+     */
+    public float getRiskFraction(int frame) {
+        return entries.getFloat(offset(frame) + RISK_FRACTION);
+    }
+
+    /**
+     * Number of pixels below the dew point
+     */
+    public int getRiskPixels(int frame) {
+        return entries.getInt(offset(frame) + RISK_PIXELS);
+    }
+
+    /**
+     * Dew point the frame was classified against, Kelvin
+     */
+    public float getDewPointKelvin(int frame) {
+        return entries.getFloat(offset(frame) + DEW_POINT_KELVIN);
+    }
+
+    /**
+     * The first frame taken at or after {@code timestampMillis}
+     *
+     * @return the frame, {@link #size()} if all frames were taken before
+     */
+    public int seek(long timestampMillis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getTimestampMillis(middle) < timestampMillis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The first frame from {@code from} on that matches the filter
+     *
+     * @return the frame, -1 if there is none
+     */
+    public int next(int from, Filter filter) {
+        int start = Math.max(from, seek(filter.fromMillis));
+        for (int frame = start; frame < size; frame++) {
+            int offset = offset(frame);
+            if (entries.getLong(offset) >= filter.toMillis) {
+                return -1;
+            }
+            if (filter.matches(entries, offset)) {
+                return frame;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * All frames that match the filter, in recording order
+     */
+    public int[] select(Filter filter) {
+        int[] frames = new int[16];
+        int count = 0;
+        for (int frame = next(0, filter); frame >= 0; frame = next(frame + 1, filter)) {
+            if (count == frames.length) {
+                int[] grown = new int[count * 2];
+                System.arraycopy(frames, 0, grown, 0, count);
+                frames = grown;
+            }
+            frames[count++] = frame;
+        }
+        int[] result = new int[count];
+        System.arraycopy(frames, 0, result, 0, count);
+        return result;
+    }
+
+    private int offset(int frame) {
+        if (frame < 0 || frame >= size) {
+            throw new IndexOutOfBoundsException("frame " + frame + " of " + size);
+        }
+        return frame * RecordingFormat.INDEX_ENTRY_SIZE;
+    }
+
+    /**
+     * Ranges a frame has to be in, all bounds are inclusive except the end of the time range. Matches every frame by default
+     */
+    public static final class Filter {
+
+        long fromMillis = Long.MIN_VALUE;
+        long toMillis = Long.MAX_VALUE;
+        float minRiskFraction = Float.NEGATIVE_INFINITY;
+        float maxRiskFraction = Float.POSITIVE_INFINITY;
+        float minTemperatureLow = Float.NEGATIVE_INFINITY;
+        float minTemperatureHigh = Float.POSITIVE_INFINITY;
+        float minDewPointMargin = Float.NEGATIVE_INFINITY;
+
+        /**
+         * Frames taken from {@code fromMillis} on and before {@code toMillis}
+         */
+        public Filter time(long fromMillis, long toMillis) {
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            return this;
+        }
+
+        /**
+         * Frames with a share of pixels below the dew point between {@code min} and {@code max}, eg 0.02 and 1 for at least 2%
+         */
+        public Filter riskFraction(float min, float max) {
+            minRiskFraction = min;
+            maxRiskFraction = max;
+            return this;
+        }
+
+        /**
+         * Frames whose lowest temperature is between {@code low} and {@code high} Kelvin
+         */
+        public Filter minTemperature(float low, float high) {
+            minTemperatureLow = low;
+            minTemperatureHigh = high;
+            return this;
+        }
+
+        /**
+         * Frames whose lowest temperature is at least {@code kelvin} below the dew point
+         */
+        public Filter belowDewPoint(float kelvin) {
+            minDewPointMargin = kelvin;
+            return this;
+        }
+
+        boolean matches(ByteBuffer entries, int offset) {
+            float riskFraction = entries.getFloat(offset + RISK_FRACTION);
+            if (riskFraction < minRiskFraction || riskFraction > maxRiskFraction) {
+                return false;
+            }
+            float min = entries.getFloat(offset + MIN);
+            if (min < minTemperatureLow || min > minTemperatureHigh) {
+                return false;
+            }
+            return entries.getFloat(offset + DEW_POINT_KELVIN) - min >= minDewPointMargin;
+        }
+    }
+}
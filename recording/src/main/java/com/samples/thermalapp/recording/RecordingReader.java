@@ -0,0 +1,276 @@
+package com.samples.thermalapp.recording;
+
+import com.samples.thermalapp.detection.AmbientConditions;
+import com.samples.thermalapp.detection.RadiometricScale;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the frames of a recording written by {@link RawRecorder} in order, one memory mapped chunk at a time.
+ * <p>
+ * Compressed frames are decoded with {@link ThermalCodec}, a delta frame onto the frame before it, so compressed
+ * recordings have to be read from a key frame on.
+ * A recording that was not closed, eg because the app was killed, is read up to the last complete record.
+ * A reader should only be used from one thread at a time.
+ */
+public class RecordingReader implements Closeable {
+
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final int chunkSize;
+    private final long createdMillis;
+    private final long frameCount;
+    private final long dataEnd;
+
+    private MappedByteBuffer chunk;
+    private long chunkStart = -1;
+    private long position = RecordingFormat.FILE_HEADER_SIZE;
+
+    //reused as long as the values do not change, most recordings have one scale and a few conditions
+    private RadiometricScale scale;
+    private AmbientConditions conditions;
+
+    //decoded frame compressed frames are applied to, and the compressed payload
+    private short[] reference = new short[0];
+    private boolean hasReference = false;
+    private long referenceKeyPosition;
+    //frames decoded while seeking
+    private RecordedFrame skipped;
+    private byte[] payload = new byte[0];
+
+    public RecordingReader(File file) throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            channel = randomAccessFile.getChannel();
+            long length = channel.size();
+            if (length < RecordingFormat.FILE_HEADER_SIZE) {
+                throw new IOException(file + " is not a recording, too short");
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, RecordingFormat.FILE_HEADER_SIZE);
+            header.order(RecordingFormat.BYTE_ORDER);
+            if (header.getInt(0) != RecordingFormat.FILE_MAGIC) {
+                throw new IOException(file + " is not a recording");
+            }
+            if (header.getInt(4) != RecordingFormat.VERSION) {
+                throw new IOException(file + " has unsupported version " + header.getInt(4));
+            }
+            chunkSize = header.getInt(RecordingFormat.FILE_CHUNK_SIZE_OFFSET);
+            createdMillis = header.getLong(RecordingFormat.FILE_CREATED_OFFSET);
+            frameCount = header.getLong(RecordingFormat.FILE_FRAME_COUNT_OFFSET);
+            long end = header.getLong(RecordingFormat.FILE_DATA_END_OFFSET);
+            //0 while recording or if the recording was not closed
+            dataEnd = end > 0 ? Math.min(end, length) : length;
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    /**
+     * Number of frames in the recording, 0 if the recording was not closed
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Read the next frame into {@code frame}
+     *
+     * @return false at the end of the recording
+     */
+    public boolean next(RecordedFrame frame) throws IOException {
+        if (!advance()) {
+            return false;
+        }
+        MappedByteBuffer chunk = chunkAt(position);
+        int offset = (int) (position - chunkStart);
+        int recordSize = chunk.getInt(offset + 4);
+        read(chunk, offset, frame);
+        frame.position = position;
+        position += recordSize;
+        return true;
+    }
+
+    /**
+     * Move to the start of the next complete record, skipping the unused ends of chunks
+     *
+     * @return false at the end of the recording
+     */
+    private boolean advance() throws IOException {
+        while (position + RecordingFormat.RECORD_HEADER_SIZE <= dataEnd) {
+            long nextChunk = (position / chunkSize + 1) * chunkSize;
+            if (nextChunk - position < RecordingFormat.RECORD_HEADER_SIZE) {
+                position = nextChunk;
+                continue;
+            }
+            MappedByteBuffer chunk = chunkAt(position);
+            int offset = (int) (position - chunkStart);
+            int magic = chunk.getInt(offset);
+            if (magic == 0) {
+                //the rest of the chunk is unused
+                position = nextChunk;
+                continue;
+            }
+            if (magic != RecordingFormat.RECORD_MAGIC) {
+                throw new IOException("corrupt record at " + position);
+            }
+            int recordSize = chunk.getInt(offset + 4);
+            if (recordSize < RecordingFormat.RECORD_HEADER_SIZE || position + recordSize > Math.min(dataEnd, nextChunk)) {
+                //a record cut off by a crash ends the recording
+                return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Start again with the first frame
+     */
+    public void rewind() {
+        position = RecordingFormat.FILE_HEADER_SIZE;
+        hasReference = false;
+    }
+
+    /**
+     * Continue with a frame of the index, the next call to {@link #next(RecordedFrame)} reads it. A compressed frame is
+     * decoded from the key frame before it on
+     *
+     * @param index the index of this recording
+     */
+    public void seek(RecordingIndex index, int frame) throws IOException {
+        long target = index.getPosition(frame);
+        long key = index.getKeyPosition(frame);
+        if (key < RecordingFormat.FILE_HEADER_SIZE || key > target || target >= dataEnd) {
+            throw new IOException("frame " + frame + " at " + target + " is not in the recording");
+        }
+        position = key;
+        hasReference = false;
+        if (skipped == null) {
+            skipped = new RecordedFrame();
+        }
+        while (advance() && position < target) {
+            next(skipped);
+        }
+        if (position != target) {
+            throw new IOException("frame " + frame + " at " + target + " is not a record");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunk = null;
+        randomAccessFile.close();
+    }
+
+    private void read(MappedByteBuffer chunk, int offset, RecordedFrame frame) throws IOException {
+        int width = chunk.getInt(offset + 16);
+        int height = chunk.getInt(offset + 20);
+        int encoding = chunk.getInt(offset + 24);
+        int payloadSize = chunk.getInt(offset + 28);
+        int pixels = width * height;
+        boolean valid;
+        switch (encoding) {
+            case RecordingFormat.ENCODING_RAW16:
+                valid = payloadSize == pixels * 2;
+                break;
+            case RecordingFormat.ENCODING_KEY:
+            case RecordingFormat.ENCODING_DELTA:
+                valid = payloadSize >= 0 && payloadSize <= ThermalCodec.maxEncodedSize(pixels);
+                break;
+            default:
+                valid = false;
+        }
+        if (!valid || width <= 0 || height <= 0) {
+            throw new IOException("unsupported record at " + position + ", encoding " + encoding + ", " + width + "x" + height);
+        }
+        frame.timestampMillis = chunk.getLong(offset + 8);
+        frame.width = width;
+        frame.height = height;
+        frame.scale = scale(chunk.getDouble(offset + 32), chunk.getDouble(offset + 40));
+        frame.conditions = conditions(chunk.getDouble(offset + 48), chunk.getDouble(offset + 56),
+                chunk.getLong(offset + 72), chunk.getInt(offset + 80));
+
+        if (frame.raw.length < pixels) {
+            frame.raw = new short[pixels];
+        }
+        chunk.position(offset + RecordingFormat.RECORD_HEADER_SIZE);
+        frame.keyPosition = position;
+        if (encoding == RecordingFormat.ENCODING_RAW16) {
+            chunk.asShortBuffer().get(frame.raw, 0, pixels);
+            return;
+        }
+        decode(chunk, encoding, payloadSize, width, height);
+        System.arraycopy(reference, 0, frame.raw, 0, pixels);
+        frame.keyPosition = referenceKeyPosition;
+    }
+
+    private void decode(MappedByteBuffer chunk, int encoding, int payloadSize, int width, int height) throws IOException {
+        int pixels = width * height;
+        if (encoding == RecordingFormat.ENCODING_DELTA && (!hasReference || reference.length != pixels)) {
+            throw new IOException("delta frame at " + position + " without a key frame before it");
+        }
+        if (payload.length < payloadSize) {
+            payload = new byte[payloadSize];
+        }
+        chunk.get(payload, 0, payloadSize);
+        if (reference.length != pixels) {
+            reference = new short[pixels];
+        }
+        //a broken frame breaks the deltas after it up to the next key frame
+        hasReference = false;
+        try {
+            if (encoding == RecordingFormat.ENCODING_KEY) {
+                ThermalCodec.decodeKey(payload, 0, payloadSize, reference, width, height);
+                referenceKeyPosition = position;
+            } else {
+                ThermalCodec.decodeDelta(payload, 0, payloadSize, reference, pixels);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("corrupt frame at " + position, e);
+        }
+        hasReference = true;
+    }
+
+    private RadiometricScale scale(double gain, double offset) {
+        if (scale == null || scale.getGain() != gain || scale.getOffset() != offset) {
+            scale = new RadiometricScale(gain, offset);
+        }
+        return scale;
+    }
+
+    private AmbientConditions conditions(double temperature, double humidity, long timestampMillis, int source) throws IOException {
+        AmbientConditions.Source[] sources = AmbientConditions.Source.values();
+        if (source < 0 || source >= sources.length) {
+            throw new IOException("unknown conditions source " + source + " at " + position);
+        }
+        if (conditions == null || conditions.getTemperature() != temperature || conditions.getHumidity() != humidity
+                || conditions.getTimestampMillis() != timestampMillis || conditions.getSource() != sources[source]) {
+            conditions = new AmbientConditions(temperature, humidity, timestampMillis, sources[source]);
+        }
+        return conditions;
+    }
+
+    /**
+     * The mapped chunk that holds {@code position}
+     */
+    private MappedByteBuffer chunkAt(long position) throws IOException {
+        long start = position / chunkSize * chunkSize;
+        if (start != chunkStart) {
+            long size = Math.min(chunkSize, dataEnd - start);
+            chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            chunk.order(RecordingFormat.BYTE_ORDER);
+            chunkStart = start;
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,177 @@
+package com.samples.thermalapp.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a recording back on its own thread, like a camera delivering frames.
+ * <p>
+ * Frames are handed to the {@link Listener} on the replay thread one at a time, the next frame is read when the listener
+ * returns. A slow listener therefore delays the playback instead of frames being skipped, which keeps runs reproducible.
+ */
+public class ReplaySource {
+
+    /**
+     * How fast frames are delivered
+     */
+    public enum Pacing {
+        //the intervals of the recording
+        ORIGINAL,
+        //a fixed frame rate
+        FIXED,
+        //as fast as the listener takes them, for throughput measurements
+        MAX
+    }
+
+    /**
+     * Receives the replayed frames, called on the replay thread
+     */
+    public interface Listener {
+        /**
+         * A frame of the recording, only valid until the method returns
+         */
+        void onFrame(RecordedFrame frame);
+
+        /**
+         * The playback ended, because the recording was played completely, {@link #stop()} was called or reading failed
+         *
+         * @param error the read error, null otherwise
+         */
+        void onEnd(IOException error);
+    }
+
+    private final File file;
+    private final Pacing pacing;
+    private final long frameIntervalNanos;
+    private final boolean loop;
+
+    private Thread thread;
+    private volatile boolean running = false;
+    private volatile long frames = 0;
+    private volatile long playbackNanos = 0;
+
+    /**
+     * @param framesPerSecond frame rate for {@link Pacing#FIXED}, ignored otherwise
+     * @param loop            start again at the first frame at the end of the recording
+     */
+    public ReplaySource(File file, Pacing pacing, double framesPerSecond, boolean loop) {
+        if (pacing == Pacing.FIXED && !(framesPerSecond > 0)) {
+            throw new IllegalArgumentException("framesPerSecond must be positive, was " + framesPerSecond);
+        }
+        this.file = file;
+        this.pacing = pacing;
+        this.frameIntervalNanos = pacing == Pacing.FIXED ? (long) (TimeUnit.SECONDS.toNanos(1) / framesPerSecond) : 0;
+        this.loop = loop;
+    }
+
+    /**
+     * Start playing on a new thread, the recording is opened on that thread
+     */
+    public synchronized void start(Listener listener) {
+        if (running) {
+            throw new IllegalStateException("already playing " + file);
+        }
+        running = true;
+        frames = 0;
+        playbackNanos = 0;
+        thread = new Thread(() -> play(listener), "ReplaySource");
+        thread.start();
+    }
+
+    /**
+     * Stop playing, the listener gets {@link Listener#onEnd(IOException)} once the current frame is done
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Wait until the playback ended
+     */
+    public void join() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            thread = this.thread;
+        }
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    public boolean isPlaying() {
+        return running;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Number of frames delivered since the start
+     */
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Delivered frames per second since the start, with {@link Pacing#MAX} the throughput of the listener
+     */
+    public double getFramesPerSecond() {
+        long nanos = playbackNanos;
+        return nanos == 0 ? 0 : frames * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    private void play(Listener listener) {
+        IOException error = null;
+        RecordedFrame frame = new RecordedFrame();
+        try (RecordingReader reader = new RecordingReader(file)) {
+            long start = System.nanoTime();
+            long due = start;
+            long firstTimestamp = Long.MIN_VALUE;
+            while (running) {
+                if (!reader.next(frame)) {
+                    if (!loop || frames == 0) {
+                        break;
+                    }
+                    reader.rewind();
+                    firstTimestamp = Long.MIN_VALUE;
+                    continue;
+                }
+                if (pacing == Pacing.ORIGINAL) {
+                    if (firstTimestamp == Long.MIN_VALUE) {
+                        firstTimestamp = frame.timestampMillis;
+                        //the intervals are measured from the first frame of every pass
+                        due = System.nanoTime();
+                    }
+                    waitUntil(due + TimeUnit.MILLISECONDS.toNanos(frame.timestampMillis - firstTimestamp));
+                } else if (pacing == Pacing.FIXED) {
+                    waitUntil(due);
+                    due += frameIntervalNanos;
+                }
+                if (!running) {
+                    break;
+                }
+                listener.onFrame(frame);
+                frames++;
+                playbackNanos = System.nanoTime() - start;
+            }
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            running = false;
+        }
+        listener.onEnd(error);
+    }
+
+    private void waitUntil(long nanoTime) {
+        long remaining;
+        while (running && (remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
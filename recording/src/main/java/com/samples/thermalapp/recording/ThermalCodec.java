@@ -0,0 +1,177 @@
+package com.samples.thermalapp.recording;
+
+/**
+ * Lossless codec for frames of unsigned 16 bit values.
+ * <p>
+ * A key frame stores every value as the difference to its left neighbour (the first value of a row to the value above),
+ * a delta frame as the difference to the same pixel of the previous frame. Differences are zig-zag mapped so small
+ * negative and positive values both become small unsigned numbers, then written as varint tokens: an even token {@code 2z}
+ * is one non-zero mapped difference {@code z}, an odd token {@code 2n + 1} a run of {@code n} zero differences.
+ * Sensor noise of a few raw units takes one byte per pixel and a still scene mostly collapses into runs.
+ */
+public final class ThermalCodec {
+
+    //a token is at most 18 bits, 3 varint bytes
+    private static final int MAX_TOKEN_BYTES = 3;
+
+    private ThermalCodec() {
+    }
+
+    /**
+     * Upper bound of the encoded size of a frame
+     */
+    public static int maxEncodedSize(int pixels) {
+        return pixels * MAX_TOKEN_BYTES;
+    }
+
+    /**
+     * Encode a key frame
+     *
+     * @return the number of bytes written
+     */
+    public static int encodeKey(short[] frame, int width, int height, byte[] out, int offset) {
+        int position = offset;
+        int zeros = 0;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int i = row + x;
+                int predicted = x > 0 ? frame[i - 1] & 0xffff : y > 0 ? frame[i - width] & 0xffff : 0;
+                int delta = (frame[i] & 0xffff) - predicted;
+                if (delta == 0) {
+                    zeros++;
+                    continue;
+                }
+                if (zeros > 0) {
+                    position = writeVarint(out, position, (zeros << 1) | 1);
+                    zeros = 0;
+                }
+                position = writeVarint(out, position, zigZag(delta) << 1);
+            }
+        }
+        if (zeros > 0) {
+            position = writeVarint(out, position, (zeros << 1) | 1);
+        }
+        return position - offset;
+    }
+
+    /**
+     * Encode a frame as differences to the previous one
+     *
+     * @return the number of bytes written
+     */
+    public static int encodeDelta(short[] frame, short[] previous, int pixels, byte[] out, int offset) {
+        int position = offset;
+        int zeros = 0;
+        for (int i = 0; i < pixels; i++) {
+            int delta = (frame[i] & 0xffff) - (previous[i] & 0xffff);
+            if (delta == 0) {
+                zeros++;
+                continue;
+            }
+            if (zeros > 0) {
+                position = writeVarint(out, position, (zeros << 1) | 1);
+                zeros = 0;
+            }
+            position = writeVarint(out, position, zigZag(delta) << 1);
+        }
+        if (zeros > 0) {
+            position = writeVarint(out, position, (zeros << 1) | 1);
+        }
+        return position - offset;
+    }
+
+    /**
+     * Decode a key frame into {@code frame}
+     *
+     * @throws IllegalArgumentException if the data does not decode to exactly {@code width * height} values
+     */
+    public static void decodeKey(byte[] in, int offset, int length, short[] frame, int width, int height) {
+        int end = offset + length;
+        int pixels = width * height;
+        int position = offset;
+        int i = 0;
+        //column of pixel i
+        int x = 0;
+        while (position < end) {
+            int token = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = in[position++];
+                token |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0 && position < end);
+            int count = (token & 1) != 0 ? token >>> 1 : 1;
+            int delta = (token & 1) != 0 ? 0 : unZigZag(token >>> 1);
+            if (count > pixels - i) {
+                throw new IllegalArgumentException("key frame data longer than " + pixels + " values");
+            }
+            for (int n = 0; n < count; n++, i++) {
+                int predicted = x > 0 ? frame[i - 1] & 0xffff : i >= width ? frame[i - width] & 0xffff : 0;
+                frame[i] = (short) (predicted + delta);
+                if (++x == width) {
+                    x = 0;
+                }
+            }
+        }
+        if (i != pixels) {
+            throw new IllegalArgumentException("key frame data has " + i + " values, expected " + pixels);
+        }
+    }
+
+    /**
+     * Decode a delta frame, {@code frame} holds the previous frame and is updated in place
+     *
+     * @throws IllegalArgumentException if the data does not decode to exactly {@code pixels} values
+     */
+    public static void decodeDelta(byte[] in, int offset, int length, short[] frame, int pixels) {
+        int end = offset + length;
+        int position = offset;
+        int i = 0;
+        while (position < end) {
+            int token = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = in[position++];
+                token |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0 && position < end);
+            if ((token & 1) != 0) {
+                //unchanged pixels, nothing to write
+                int count = token >>> 1;
+                if (count > pixels - i) {
+                    throw new IllegalArgumentException("delta frame data longer than " + pixels + " values");
+                }
+                i += count;
+                continue;
+            }
+            if (i >= pixels) {
+                throw new IllegalArgumentException("delta frame data longer than " + pixels + " values");
+            }
+            frame[i] = (short) ((frame[i] & 0xffff) + unZigZag(token >>> 1));
+            i++;
+        }
+        if (i != pixels) {
+            throw new IllegalArgumentException("delta frame data has " + i + " values, expected " + pixels);
+        }
+    }
+
+    static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarint(byte[] out, int position, int value) {
+        while ((value & ~0x7f) != 0) {
+            out[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+}
@@ -0,0 +1,169 @@
+package com.samples.thermalapp.recording;
+
+import com.samples.thermalapp.detection.AmbientConditions;
+import com.samples.thermalapp.detection.RadiometricScale;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RawRecorderTest {
+
+    //small chunks so a recording spans many of them
+    private static final int CHUNK_SIZE = 32 * 1024;
+    private static final RadiometricScale SCALE = new RadiometricScale(0.04, 1.5);
+    private static final AmbientConditions CONDITIONS = new AmbientConditions(21.5, 65, 1234, AmbientConditions.Source.SENSOR);
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("recording", RecordingFormat.FILE_EXTENSION);
+    }
+
+    @After
+    public void deleteFiles() {
+        file.delete();
+        RecordingFormat.indexFile(file).delete();
+    }
+
+    @Test
+    public void uncompressedRoundTrip() throws Exception {
+        Map<Long, short[]> frames = record(new RawRecorder(file, CHUNK_SIZE, 0), 80, 60, 200);
+        assertRecorded(frames, 80, 60);
+    }
+
+    @Test
+    public void compressedRoundTrip() throws Exception {
+        RawRecorder recorder = new RawRecorder(file, CHUNK_SIZE, 8);
+        assertTrue(recorder.isCompressed());
+        Map<Long, short[]> frames = record(recorder, 80, 60, 200);
+        assertRecorded(frames, 80, 60);
+        //noise of a few raw units compresses to about half
+        assertTrue(file.length() < frames.size() * 80 * 60 * 2 * 3 / 4);
+    }
+
+    @Test
+    public void compressedFrameSizeChangeStartsAKeyFrame() throws Exception {
+        Random random = new Random(5);
+        Map<Long, short[]> frames = new HashMap<>();
+        try (RawRecorder recorder = new RawRecorder(file, CHUNK_SIZE, 64)) {
+            for (long timestamp = 0; timestamp < 60; timestamp++) {
+                int width = timestamp < 30 ? 80 : 40;
+                short[] frame = frame(random, width, 60);
+                if (recorder.append(timestamp, frame, width, 60, SCALE, CONDITIONS)) {
+                    frames.put(timestamp, frame);
+                }
+                Thread.sleep(1);
+            }
+        }
+        try (RecordingReader reader = new RecordingReader(file)) {
+            RecordedFrame frame = new RecordedFrame();
+            int read = 0;
+            while (reader.next(frame)) {
+                short[] expected = frames.get(frame.getTimestampMillis());
+                assertEquals(expected.length / 60, frame.getWidth());
+                assertArrayEquals(expected, Arrays.copyOf(frame.getRaw(), expected.length));
+                read++;
+            }
+            assertEquals(frames.size(), read);
+        }
+    }
+
+    @Test
+    public void closedRecorderDropsFrames() throws Exception {
+        RawRecorder recorder = new RawRecorder(file, CHUNK_SIZE, 8);
+        recorder.close();
+        assertFalse(recorder.append(0, new short[16], 4, 4, SCALE, CONDITIONS));
+        assertEquals(1, recorder.getDroppedFrames());
+        assertEquals(0, recorder.getFrameCount());
+        //closing twice is harmless
+        recorder.close();
+        assertNull(recorder.getError());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFrameSmallerThanItsSize() throws Exception {
+        try (RawRecorder recorder = new RawRecorder(file)) {
+            recorder.append(0, new short[15], 4, 4, SCALE, CONDITIONS);
+        }
+    }
+
+    /**
+     * Record frames of a slowly moving scene with sensor noise
+     *
+     * @return the frames that were appended, by timestamp
+     */
+    static Map<Long, short[]> record(RawRecorder recorder, int width, int height, int count) throws Exception {
+        Random random = new Random(count);
+        Map<Long, short[]> frames = new HashMap<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                long timestamp = 1_000_000 + i * 111L;
+                short[] frame = frame(random, width, height);
+                if (recorder.append(timestamp, frame, width, height, SCALE, CONDITIONS)) {
+                    frames.put(timestamp, frame);
+                }
+                //the camera delivers frames at about 9 fps, give the recorder's thread a moment
+                Thread.sleep(1);
+            }
+        } finally {
+            recorder.close();
+        }
+        assertNull(recorder.getError());
+        assertEquals(frames.size(), recorder.getFrameCount());
+        assertEquals(count, recorder.getFrameCount() + recorder.getDroppedFrames());
+        assertFalse(frames.isEmpty());
+        assertEquals(recorder.getSize(), recorder.getFile().length());
+        return frames;
+    }
+
+    private void assertRecorded(Map<Long, short[]> frames, int width, int height) throws IOException {
+        try (RecordingReader reader = new RecordingReader(file)) {
+            assertEquals(frames.size(), reader.getFrameCount());
+            RecordedFrame frame = new RecordedFrame();
+            long lastTimestamp = Long.MIN_VALUE;
+            int read = 0;
+            while (reader.next(frame)) {
+                assertTrue(frame.getTimestampMillis() > lastTimestamp);
+                lastTimestamp = frame.getTimestampMillis();
+                short[] expected = frames.get(frame.getTimestampMillis());
+                assertNotNull(expected);
+                assertEquals(width, frame.getWidth());
+                assertEquals(height, frame.getHeight());
+                assertArrayEquals(expected, Arrays.copyOf(frame.getRaw(), width * height));
+                assertEquals(SCALE.getGain(), frame.getScale().getGain(), 0);
+                assertEquals(SCALE.getOffset(), frame.getScale().getOffset(), 0);
+                assertEquals(CONDITIONS.getTemperature(), frame.getConditions().getTemperature(), 0);
+                assertEquals(CONDITIONS.getHumidity(), frame.getConditions().getHumidity(), 0);
+                assertEquals(CONDITIONS.getTimestampMillis(), frame.getConditions().getTimestampMillis());
+                assertEquals(CONDITIONS.getSource(), frame.getConditions().getSource());
+                read++;
+            }
+            assertEquals(frames.size(), read);
+        }
+    }
+
+    private static short[] frame(Random random, int width, int height) {
+        short[] frame = new short[width * height];
+        int base = 29000 + random.nextInt(50);
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = (short) (base + (i % width) * 2 + i / width + random.nextInt(5));
+        }
+        return frame;
+    }
+}
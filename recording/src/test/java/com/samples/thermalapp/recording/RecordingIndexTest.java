@@ -0,0 +1,225 @@
+package com.samples.thermalapp.recording;
+
+import com.samples.thermalapp.detection.AmbientConditions;
+import com.samples.thermalapp.detection.RadiometricScale;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RecordingIndexTest {
+
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+    private static final int PIXELS = WIDTH * HEIGHT;
+    //dew point about 12.0 C, 285.1 K
+    private static final AmbientConditions CONDITIONS = new AmbientConditions(20, 60, 0, AmbientConditions.Source.MANUAL);
+
+    private File file;
+    private final Map<Long, short[]> frames = new HashMap<>();
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("recording", RecordingFormat.FILE_EXTENSION);
+    }
+
+    @After
+    public void deleteFiles() {
+        file.delete();
+        RecordingFormat.indexFile(file).delete();
+    }
+
+    @Test
+    public void uncompressedIndexMatchesFrames() throws Exception {
+        record(0);
+        assertIndexMatchesFrames(RecordingIndex.open(file));
+    }
+
+    @Test
+    public void compressedIndexMatchesFrames() throws Exception {
+        record(8);
+        assertIndexMatchesFrames(RecordingIndex.open(file));
+    }
+
+    @Test
+    public void seekFindsFirstFrameAtOrAfter() throws Exception {
+        record(8);
+        RecordingIndex index = RecordingIndex.open(file);
+        long[] timestamps = timestamps();
+
+        assertEquals(0, index.seek(Long.MIN_VALUE));
+        assertEquals(index.size(), index.seek(timestamps[timestamps.length - 1] + 1));
+        for (int frame = 0; frame < timestamps.length; frame++) {
+            assertEquals(frame, index.seek(timestamps[frame]));
+            assertEquals(frame, index.seek(timestamps[frame] - 1));
+            assertEquals(frame + 1, index.seek(timestamps[frame] + 1));
+        }
+    }
+
+    @Test
+    public void readerSeeksToIndexedFrames() throws Exception {
+        for (int keyFrameInterval : new int[]{0, 8}) {
+            frames.clear();
+            record(keyFrameInterval);
+            RecordingIndex index = RecordingIndex.open(file);
+            Random random = new Random(keyFrameInterval);
+            try (RecordingReader reader = new RecordingReader(file)) {
+                RecordedFrame frame = new RecordedFrame();
+                for (int i = 0; i < 100; i++) {
+                    int target = random.nextInt(index.size());
+                    reader.seek(index, target);
+                    assertTrue(reader.next(frame));
+                    assertEquals(index.getTimestampMillis(target), frame.getTimestampMillis());
+                    assertArrayEquals(frames.get(frame.getTimestampMillis()), Arrays.copyOf(frame.getRaw(), PIXELS));
+                    //reading goes on after the seek
+                    if (target + 1 < index.size()) {
+                        assertTrue(reader.next(frame));
+                        assertEquals(index.getTimestampMillis(target + 1), frame.getTimestampMillis());
+                    }
+                }
+            }
+            deleteFiles();
+        }
+    }
+
+    @Test
+    public void filtersSelectRiskyFrames() throws Exception {
+        record(8);
+        RecordingIndex index = RecordingIndex.open(file);
+        long[] timestamps = timestamps();
+
+        int[] risky = index.select(new RecordingIndex.Filter().riskFraction(0.05f, 1));
+        assertArrayEquals(expectedRisky(timestamps, Long.MIN_VALUE, Long.MAX_VALUE), risky);
+        long from = timestamps[timestamps.length / 3];
+        long to = timestamps[timestamps.length * 2 / 3];
+        assertArrayEquals(expectedRisky(timestamps, from, to),
+                index.select(new RecordingIndex.Filter().riskFraction(0.05f, 1).time(from, to)));
+        //the cold corner is 280 K, 5 K below the dew point
+        assertArrayEquals(risky, index.select(new RecordingIndex.Filter().belowDewPoint(5)));
+        assertEquals(0, index.select(new RecordingIndex.Filter().belowDewPoint(6)).length);
+        assertArrayEquals(risky, index.select(new RecordingIndex.Filter().minTemperature(279, 281)));
+        assertEquals(index.size(), index.select(new RecordingIndex.Filter()).length);
+        assertEquals(-1, index.next(index.size(), new RecordingIndex.Filter()));
+    }
+
+    @Test
+    public void missingOrStaleIndexIsRebuilt() throws Exception {
+        record(8);
+        RecordingIndex written = RecordingIndex.read(RecordingFormat.indexFile(file));
+
+        assertTrue(RecordingFormat.indexFile(file).delete());
+        assertSameEntries(written, RecordingIndex.open(file));
+        assertTrue(RecordingFormat.indexFile(file).isFile());
+
+        //an index of another version is not used
+        try (FileOutputStream out = new FileOutputStream(RecordingFormat.indexFile(file))) {
+            out.write(new byte[RecordingFormat.INDEX_HEADER_SIZE]);
+        }
+        assertSameEntries(written, RecordingIndex.open(file));
+    }
+
+    /**
+     * Record frames at 20 C with every 5th frame of 10 having a cold corner
+     */
+    private void record(int keyFrameInterval) throws Exception {
+        Random random = new Random(22);
+        RadiometricScale scale = RadiometricScale.CENTIKELVIN;
+        try (RawRecorder recorder = new RawRecorder(file, 16 * 1024, keyFrameInterval)) {
+            for (int i = 0; i < 120; i++) {
+                long timestamp = 5000 + i * 100L;
+                short[] frame = new short[PIXELS];
+                for (int p = 0; p < PIXELS; p++) {
+                    frame[p] = (short) (29300 + random.nextInt(5));
+                }
+                if (i % 10 >= 5) {
+                    //a tenth of the frame at 280 K
+                    Arrays.fill(frame, 0, PIXELS / 10, (short) 28000);
+                }
+                if (recorder.append(timestamp, frame, WIDTH, HEIGHT, scale, CONDITIONS)) {
+                    frames.put(timestamp, frame);
+                }
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private long[] timestamps() {
+        long[] timestamps = new long[frames.size()];
+        int i = 0;
+        for (long timestamp : frames.keySet()) {
+            timestamps[i++] = timestamp;
+        }
+        Arrays.sort(timestamps);
+        return timestamps;
+    }
+
+    private static int[] expectedRisky(long[] timestamps, long from, long to) {
+        int[] risky = new int[timestamps.length];
+        int count = 0;
+        for (int frame = 0; frame < timestamps.length; frame++) {
+            long timestamp = timestamps[frame];
+            if ((timestamp - 5000) / 100 % 10 >= 5 && timestamp >= from && timestamp < to) {
+                risky[count++] = frame;
+            }
+        }
+        return Arrays.copyOf(risky, count);
+    }
+
+    private void assertIndexMatchesFrames(RecordingIndex index) throws IOException {
+        long[] timestamps = timestamps();
+        assertEquals(timestamps.length, index.size());
+        for (int frame = 0; frame < index.size(); frame++) {
+            short[] values = frames.get(timestamps[frame]);
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            long sum = 0;
+            int risk = 0;
+            int threshold = RadiometricScale.CENTIKELVIN.toRawThreshold(CONDITIONS.getDewPointKelvin());
+            for (short value : values) {
+                int raw = value & 0xffff;
+                min = Math.min(min, raw);
+                max = Math.max(max, raw);
+                sum += raw;
+                if (raw < threshold) {
+                    risk++;
+                }
+            }
+            assertEquals(timestamps[frame], index.getTimestampMillis(frame));
+            assertEquals(min / 100f, index.getMin(frame), 1e-3f);
+            assertEquals(max / 100f, index.getMax(frame), 1e-3f);
+            assertEquals(sum / 100f / PIXELS, index.getMean(frame), 1e-3f);
+            assertEquals(risk, index.getRiskPixels(frame));
+            assertEquals((float) risk / PIXELS, index.getRiskFraction(frame), 0);
+            assertEquals(CONDITIONS.getDewPointKelvin(), index.getDewPointKelvin(frame), 1e-3);
+            assertTrue(index.getKeyPosition(frame) <= index.getPosition(frame));
+        }
+        //the index written while recording is what reading the recording gives
+        assertSameEntries(index, RecordingIndex.build(file));
+    }
+
+    private static void assertSameEntries(RecordingIndex expected, RecordingIndex actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int frame = 0; frame < expected.size(); frame++) {
+            assertEquals(expected.getTimestampMillis(frame), actual.getTimestampMillis(frame));
+            assertEquals(expected.getPosition(frame), actual.getPosition(frame));
+            assertEquals(expected.getKeyPosition(frame), actual.getKeyPosition(frame));
+            assertEquals(expected.getMin(frame), actual.getMin(frame), 0);
+            assertEquals(expected.getMax(frame), actual.getMax(frame), 0);
+            assertEquals(expected.getMean(frame), actual.getMean(frame), 0);
+            assertEquals(expected.getRiskPixels(frame), actual.getRiskPixels(frame));
+            assertEquals(expected.getDewPointKelvin(frame), actual.getDewPointKelvin(frame), 0);
+        }
+    }
+}
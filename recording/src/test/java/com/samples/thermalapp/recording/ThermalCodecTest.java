@@ -0,0 +1,119 @@
+package com.samples.thermalapp.recording;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ThermalCodecTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+    private static final int PIXELS = WIDTH * HEIGHT;
+
+    @Test
+    public void keyFramesRoundTrip() {
+        Random random = new Random(21);
+        for (short[] frame : frames(random)) {
+            assertArrayEquals(frame, decodeKey(frame));
+        }
+    }
+
+    @Test
+    public void deltaFramesRoundTrip() {
+        Random random = new Random(22);
+        short[][] frames = frames(random);
+        for (short[] previous : frames) {
+            for (short[] frame : frames) {
+                byte[] out = new byte[ThermalCodec.maxEncodedSize(PIXELS)];
+                int length = ThermalCodec.encodeDelta(frame, previous, PIXELS, out, 0);
+                assertTrue(length <= out.length);
+                short[] decoded = previous.clone();
+                ThermalCodec.decodeDelta(out, 0, length, decoded, PIXELS);
+                assertArrayEquals(frame, decoded);
+            }
+        }
+    }
+
+    @Test
+    public void stillSceneCollapsesIntoARun() {
+        short[] frame = noisyFrame(new Random(23), 4);
+        byte[] out = new byte[ThermalCodec.maxEncodedSize(PIXELS)];
+
+        assertEquals(3, ThermalCodec.encodeDelta(frame, frame, PIXELS, out, 0));
+        //noise of a few raw units takes about a byte per pixel
+        assertTrue(ThermalCodec.encodeKey(frame, WIDTH, HEIGHT, out, 0) < PIXELS * 5 / 4);
+    }
+
+    @Test
+    public void encodesAtAnOffset() {
+        short[] frame = noisyFrame(new Random(24), 100);
+        byte[] out = new byte[ThermalCodec.maxEncodedSize(PIXELS) + 10];
+        int length = ThermalCodec.encodeKey(frame, WIDTH, HEIGHT, out, 10);
+        short[] decoded = new short[PIXELS];
+        ThermalCodec.decodeKey(out, 10, length, decoded, WIDTH, HEIGHT);
+        assertArrayEquals(frame, decoded);
+    }
+
+    @Test
+    public void zigZagIsReversible() {
+        for (int value = -70000; value <= 70000; value++) {
+            assertEquals(value, ThermalCodec.unZigZag(ThermalCodec.zigZag(value)));
+        }
+        assertEquals(0, ThermalCodec.zigZag(0));
+        assertEquals(1, ThermalCodec.zigZag(-1));
+        assertEquals(2, ThermalCodec.zigZag(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsKeyFrameOfWrongSize() {
+        short[] frame = noisyFrame(new Random(25), 10);
+        byte[] out = new byte[ThermalCodec.maxEncodedSize(PIXELS)];
+        int length = ThermalCodec.encodeKey(frame, WIDTH, HEIGHT, out, 0);
+        ThermalCodec.decodeKey(out, 0, length, new short[PIXELS], WIDTH, HEIGHT - 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDeltaRunPastTheFrame() {
+        short[] frame = new short[PIXELS];
+        byte[] out = new byte[ThermalCodec.maxEncodedSize(PIXELS)];
+        int length = ThermalCodec.encodeDelta(frame, frame, PIXELS, out, 0);
+        ThermalCodec.decodeDelta(out, 0, length, new short[PIXELS], PIXELS - 1);
+    }
+
+    private static short[] decodeKey(short[] frame) {
+        byte[] out = new byte[ThermalCodec.maxEncodedSize(PIXELS)];
+        int length = ThermalCodec.encodeKey(frame, WIDTH, HEIGHT, out, 0);
+        assertTrue(length <= out.length);
+        short[] decoded = new short[PIXELS];
+        ThermalCodec.decodeKey(out, 0, length, decoded, WIDTH, HEIGHT);
+        return decoded;
+    }
+
+    /**
+     * Constant, noisy, random and worst case frames
+     */
+    private static short[][] frames(Random random) {
+        short[] constant = new short[PIXELS];
+        short[] extremes = new short[PIXELS];
+        short[] full = new short[PIXELS];
+        for (int i = 0; i < PIXELS; i++) {
+            constant[i] = (short) 29315;
+            //every difference is as large as it gets
+            extremes[i] = (short) ((i + i / WIDTH) % 2 == 0 ? 0 : 0xffff);
+            full[i] = (short) random.nextInt(0x10000);
+        }
+        return new short[][]{constant, noisyFrame(random, 4), noisyFrame(random, 1000), extremes, full};
+    }
+
+    private static short[] noisyFrame(Random random, int noise) {
+        short[] frame = new short[PIXELS];
+        for (int i = 0; i < PIXELS; i++) {
+            frame[i] = (short) (29000 + (i % WIDTH) * 3 + i / WIDTH + random.nextInt(noise + 1));
+        }
+        return frame;
+    }
+}